@@ -0,0 +1,273 @@
+package player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import player.aiHelper.AIHelper;
+import player.aiHelper.AINode;
+import player.aiHelper.DetectiveAIGameState;
+import player.aiHelper.DistanceTable;
+import player.aiHelper.GraphRegistry;
+import player.aiHelper.LocationSet;
+import player.aiHelper.Minimax;
+import player.aiHelper.Minimax.AIType;
+import player.aiHelper.MrXBelief;
+import scotlandyard.Colour;
+import scotlandyard.Graph;
+import scotlandyard.Move;
+import scotlandyard.MoveTicket;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardView;
+import scotlandyard.Spectator;
+import scotlandyard.Ticket;
+
+/**
+ * Plans the moves of all the AI detectives of a game. It is the only
+ * spectator of the detectives, so MrX's possible locations are calculated
+ * once for all of them. When the first AI detective of a round has to move,
+ * the moves of every AI detective still to play in that round are planned at
+ * once: each detective is searched with the planned moves of the ones before
+ * it already played, sharing SEARCH_TIME. The other detectives then get
+ * their planned move immediately.
+ *
+ * The detectives are searched with InformationSetMCTS, which samples MrX's
+ * location from the belief on each iteration, so it is anytime and needs
+ * much less than a full move's time budget.
+ *
+ * The moves of human detectives are not known in advance, so a plan assumes
+ * that any human detective playing between two AI detectives stays where it
+ * is. Planning stops early if the planned moves cover all of MrX's possible
+ * locations, the later detectives are then planned again when they move.
+ */
+public class DetectiveCoordinator implements Spectator {
+
+	/**
+	 * Time budget in milliseconds shared by the detectives planned at once,
+	 * see TimeManager
+	 */
+	private static final long SEARCH_TIME = 6000;
+
+	private ScotlandYardView view;
+	private Graph<Integer, Route> graph;
+	private AIHelper help;
+	private LocationSet possibleLocations;
+	private MrXBelief mrXBelief;
+
+	private List<Colour> detectives;
+	private Map<Colour, Move> plan;
+	private int planRound;
+
+	/**
+	 * @param view
+	 *            A view of the game
+	 * @param graphFilename
+	 */
+	public DetectiveCoordinator(ScotlandYardView view, String graphFilename) {
+		this.view = view;
+		try {
+			graph = GraphRegistry.forFile(graphFilename);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		help = new AIHelper(view, graph);
+		detectives = new ArrayList<Colour>();
+		plan = new HashMap<Colour, Move>();
+		planRound = -1;
+		resetPossibleLocations();
+	}
+
+	/**
+	 * Adds a detective to the ones the coordinator plans for
+	 *
+	 * @param colour
+	 */
+	public synchronized void addDetective(Colour colour) {
+		if (!detectives.contains(colour))
+			detectives.add(colour);
+	}
+
+	/**
+	 * MrX can be at any location of the board not occupied by a detective,
+	 * with the same probability
+	 */
+	private void resetPossibleLocations() {
+		DistanceTable distances = DistanceTable.forGraph(graph);
+		possibleLocations = distances.getMrXTracker().allLocations();
+		for (int location : help.getDetectiveLocations())
+			possibleLocations.remove(location);
+		mrXBelief = new MrXBelief(distances.getCompactGraph(), possibleLocations);
+	}
+
+	/**
+	 * Returns the move of the given detective. The planned move is used if it
+	 * was planned in this round and is still valid, otherwise the detective
+	 * and the AI detectives after it are planned again.
+	 *
+	 * @param colour
+	 *            Detective to move
+	 * @param moves
+	 *            Its valid moves
+	 * @return the move to play, or null if the search failed
+	 */
+	public synchronized Move move(Colour colour, Set<Move> moves) {
+		Move planned = plan.remove(colour);
+		if (planRound == view.getRound() && planned != null && moves.contains(planned))
+			return planned;
+		plan(colour);
+		return plan.remove(colour);
+	}
+
+	/**
+	 * Plans the moves of the AI detectives that play after first in this
+	 * round, first included.
+	 *
+	 * @param first
+	 */
+	private void plan(Colour first) {
+		plan.clear();
+		planRound = view.getRound();
+
+		List<Colour> players = view.getPlayers();
+		List<Colour> toPlan = new ArrayList<Colour>();
+		for (int i = players.indexOf(first); i < players.size(); i++) {
+			if (players.get(i) == first || detectives.contains(players.get(i)))
+				toPlan.add(players.get(i));
+		}
+		long budget = SEARCH_TIME / toPlan.size();
+
+		PlannedView plannedView = new PlannedView(view);
+		LocationSet locations = new LocationSet(possibleLocations);
+		MrXBelief belief = new MrXBelief(mrXBelief);
+		for (Colour colour : toPlan) {
+			// MrX is caught by the plan wherever he is
+			if (locations.isEmpty())
+				break;
+			plannedView.current = colour;
+			// The search draws MrX's location itself, any possible one will do
+			AINode root = DetectiveAIGameState.createGameState(colour, locations, belief, null, plannedView,
+					locations.get(0), graph);
+			Move move = Minimax.executeMinimax(root, colour, AIType.InformationSetMCTS, budget);
+			if (move == null)
+				break;
+			plan.put(colour, move);
+			if (move instanceof MoveTicket) {
+				MoveTicket mt = (MoveTicket) move;
+				plannedView.play(mt);
+				locations.remove(mt.target);
+				belief.remove(mt.target);
+				belief.normalise();
+			}
+		}
+	}
+
+	/**
+	 * Keeps track of all the moves and calculates mrX's possible locations
+	 */
+	@Override
+	public synchronized void notify(Move move) {
+		if (move instanceof MoveTicket) {
+			MoveTicket mt = (MoveTicket) move;
+			if (move.colour == Colour.Black) {
+				LocationSet previous = new LocationSet(possibleLocations);
+				help.calculatePossibleMrXLocations(previous, mt.ticket, possibleLocations);
+				help.updateMrXBelief(mrXBelief, mt.ticket);
+				// Should not happen, but never search with no locations at all
+				if (possibleLocations.isEmpty())
+					resetPossibleLocations();
+			} else {
+				possibleLocations.remove(mt.target);
+				mrXBelief.remove(mt.target);
+				mrXBelief.normalise();
+				if (possibleLocations.isEmpty())
+					resetPossibleLocations();
+			}
+		}
+	}
+
+	/**
+	 * The game as it will be once the detectives planned so far have played
+	 * their planned moves, with the tickets they used given to MrX. Other
+	 * players are where the real view puts them.
+	 */
+	private static class PlannedView implements ScotlandYardView {
+
+		private final ScotlandYardView view;
+		private final Map<Colour, MoveTicket> played;
+		Colour current;
+
+		PlannedView(ScotlandYardView view) {
+			this.view = view;
+			this.played = new HashMap<Colour, MoveTicket>();
+			this.current = view.getCurrentPlayer();
+		}
+
+		void play(MoveTicket move) {
+			played.put(move.colour, move);
+		}
+
+		@Override
+		public List<Colour> getPlayers() {
+			return view.getPlayers();
+		}
+
+		@Override
+		public Set<Colour> getWinningPlayers() {
+			return view.getWinningPlayers();
+		}
+
+		@Override
+		public int getPlayerLocation(Colour colour) {
+			MoveTicket move = played.get(colour);
+			if (move != null)
+				return move.target;
+			return view.getPlayerLocation(colour);
+		}
+
+		@Override
+		public int getPlayerTickets(Colour colour, Ticket ticket) {
+			int tickets = view.getPlayerTickets(colour, ticket);
+			if (colour == Colour.Black) {
+				for (MoveTicket move : played.values()) {
+					if (move.ticket == ticket)
+						tickets++;
+				}
+				return tickets;
+			}
+			MoveTicket move = played.get(colour);
+			if (move != null && move.ticket == ticket)
+				return tickets - 1;
+			return tickets;
+		}
+
+		@Override
+		public boolean isGameOver() {
+			return view.isGameOver();
+		}
+
+		@Override
+		public boolean isReady() {
+			return view.isReady();
+		}
+
+		@Override
+		public Colour getCurrentPlayer() {
+			return current;
+		}
+
+		@Override
+		public int getRound() {
+			return view.getRound();
+		}
+
+		@Override
+		public List<Boolean> getRounds() {
+			return view.getRounds();
+		}
+
+	}
+
+}
@@ -6,14 +6,16 @@ import java.util.Set;
 
 import player.aiHelper.MyAIGameState;
 import player.aiHelper.AINode;
+import player.aiHelper.GraphRegistry;
 import player.aiHelper.Minimax;
 import player.aiHelper.Minimax.AIType;
+import player.aiHelper.SearchMemory;
+import player.aiHelper.TimeManager;
 import scotlandyard.Colour;
 import scotlandyard.Graph;
 import scotlandyard.Move;
 import scotlandyard.Player;
 import scotlandyard.Route;
-import scotlandyard.ScotlandYardGraphReader;
 import scotlandyard.ScotlandYardView;
 import scotlandyard.Spectator;
 
@@ -25,29 +27,44 @@ public class MyAIPlayer implements Player, Spectator {
 	private ScotlandYardView view;
 	private Graph<Integer, Route> graph;
 	private String graphFilename;
+	private AIType type;
+	private SearchMemory memory;
 
 	/**
 	 * Constructor that takes a a view of the game and the filename of the graph
-	 * file.
+	 * file. Searches with alphabeta.
 	 * 
 	 * @param view
 	 *            A view of the game
 	 * @param graphFilename
 	 */
 	public MyAIPlayer(ScotlandYardView view, String graphFilename) {
+		this(view, graphFilename, AIType.AlphaBeta);
+	}
+
+	/**
+	 * @param view
+	 *            A view of the game
+	 * @param graphFilename
+	 * @param type
+	 *            The search used to choose MrX's moves
+	 */
+	public MyAIPlayer(ScotlandYardView view, String graphFilename, AIType type) {
 		this.view = view;
 		this.graphFilename = graphFilename;
-		ScotlandYardGraphReader reader = new ScotlandYardGraphReader();
+		this.type = type;
+		this.memory = new SearchMemory();
 		try {
-			graph = reader.readGraph(graphFilename);
+			graph = GraphRegistry.forFile(graphFilename);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Creates a new model based on data from the view and executes the
-	 * alphabeta algorithm with iterative deepening. If an error occurs, it chooses a random move.
+	 * Creates a new model based on data from the view and executes the search
+	 * chosen when the player was created, by default the alphabeta algorithm
+	 * with iterative deepening. If an error occurs, it chooses a random move.
 	 * 
 	 * @param location
 	 * @param moves
@@ -56,11 +73,12 @@ public class MyAIPlayer implements Player, Spectator {
 	public Move notify(int location, Set<Move> moves) {
 		System.out.println("***LOCATION: " + location);
 
-		AINode currentState = MyAIGameState.createGameState(null, view, location, graph, graphFilename);
+		AINode currentState = MyAIGameState.createGameState(null, view, location, graph);
 		Move selectedMove = null;
 
 		try {
-			selectedMove = Minimax.executeMinimax(currentState, Colour.Black, AIType.AlphaBeta);
+			selectedMove = Minimax.executeMinimax(currentState, Colour.Black, type, TimeManager.JUDGE_MOVE_TIME,
+					memory);
 			// If error occurs, fall back to random moves!
 			if (selectedMove == null)
 				throw new NullPointerException("Error detected! Playing random move!");
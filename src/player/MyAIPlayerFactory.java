@@ -2,6 +2,7 @@ package player;
 
 import gui.Gui;
 import net.PlayerFactory;
+import player.aiHelper.Minimax.AIType;
 import scotlandyard.Colour;
 import scotlandyard.Player;
 import scotlandyard.ScotlandYardView;
@@ -27,7 +28,11 @@ public class MyAIPlayerFactory implements PlayerFactory {
 	String positionsFilename;
 
 	protected List<Spectator> spectators;
+	// Search used by the AI MrX
+	AIType mrXType;
 	Gui gui;
+	// Shared by all the AI detectives, created with the first one
+	DetectiveCoordinator coordinator;
 
 	public MyAIPlayerFactory() {
 		typeMap = new HashMap<Colour, PlayerType>();
@@ -42,12 +47,28 @@ public class MyAIPlayerFactory implements PlayerFactory {
 		imageFilename = "resources/map.jpg";
 
 		spectators = new ArrayList<Spectator>();
+		mrXType = AIType.AlphaBeta;
+	}
+
+	/**
+	 * @param mrXType
+	 *            The search used by the AI MrX, e.g. AIType.MonteCarloTreeSearch
+	 */
+	public MyAIPlayerFactory(AIType mrXType) {
+		this();
+		this.mrXType = mrXType;
 	}
 
 	public MyAIPlayerFactory(Map<Colour, PlayerType> typeMap, String imageFilename, String positionsFilename) {
+		this(typeMap, imageFilename, positionsFilename, AIType.AlphaBeta);
+	}
+
+	public MyAIPlayerFactory(Map<Colour, PlayerType> typeMap, String imageFilename, String positionsFilename,
+			AIType mrXType) {
 		this.typeMap = typeMap;
 		this.imageFilename = imageFilename;
 		this.positionsFilename = positionsFilename;
+		this.mrXType = mrXType;
 		spectators = new ArrayList<Spectator>();
 	}
 
@@ -56,13 +77,15 @@ public class MyAIPlayerFactory implements PlayerFactory {
 		switch (typeMap.get(colour)) {
 		case AI:
 			if (colour == Colour.Black) {
-				MyAIPlayer ai = new MyAIPlayer(view, mapFilename);
+				MyAIPlayer ai = new MyAIPlayer(view, mapFilename, mrXType);
 				spectators.add(ai);
 				return ai;
 			} else{
-				DetectiveAIPlayer ai = new DetectiveAIPlayer(view, mapFilename);
-				spectators.add(ai);
-				return ai;
+				if (coordinator == null) {
+					coordinator = new DetectiveCoordinator(view, mapFilename);
+					spectators.add(coordinator);
+				}
+				return new DetectiveAIPlayer(colour, coordinator);
 			}
 		case GUI:
 			return gui(view);
@@ -1,10 +1,8 @@
 package player.aiHelper;
 
-import java.util.Set;
-import scotlandyard.Move;
-
 /**
- * Interface for node of game tree
+ * Interface for node of game tree. Moves are packed ints, see PackedMove; they
+ * are only turned into scotlandyard.Move objects when the search returns.
  */
 public interface AINode {
 	
@@ -20,16 +18,41 @@ public interface AINode {
 	
 	public void simulateMove();
 	
-	public Set<Move> getSuccessorOptions();
+	/**
+	 * Generates the valid moves of the current player
+	 * @param moves cleared and filled with the packed moves
+	 */
+	public void getSuccessorOptions(MoveList moves);
 	
-	public AINode copy(Move move);
+	public AINode copy(int move);
+	
+	/**
+	 * Plays the move on this node in place and passes the turn, increasing
+	 * the depth by one. Used to walk the tree on a single node instead of
+	 * copying it for each successor.
+	 * @param move a valid packed move for the current player
+	 */
+	public void apply(int move);
+	
+	/**
+	 * Takes back the last move played with apply(int)
+	 */
+	public void undo();
 	
 	public int getDepth();
 	
 	public void setDepth(int depth);
 	
-	public boolean isTerminal();
+	/**
+	 * @param maxDepth depth at which the search cuts the tree
+	 * @return true if the node is not expanded further
+	 */
+	public boolean isTerminal(int maxDepth);
 	
-	public Move getUsedMove();
+	/**
+	 * @return the packed move that led to this node, PackedMove.NONE for the
+	 *         root
+	 */
+	public int getUsedMove();
 	
 }
@@ -1,8 +1,6 @@
 package player.aiHelper;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import scotlandyard.Colour;
@@ -11,45 +9,82 @@ import scotlandyard.Move;
 import scotlandyard.Route;
 import scotlandyard.ScotlandYardView;
 import scotlandyard.Ticket;
-import solution.ScotlandYardModel;
 
 /**
  * An AbstractGameState is a representation of the state of the game that
- * implements AINode and all of the node related methods e.g score()
+ * implements AINode and all of the node related methods e.g score(). The
+ * game itself is kept in a packed SearchState, so creating a node is cheap
+ * compared to building a whole ScotlandYardModel.
  */
-abstract public class AbstractGameState extends ScotlandYardModel implements AINode {
+abstract public class AbstractGameState implements AINode, ScotlandYardView {
 
 	AIHelper help; // AIHelper provides various methods used in score()
 	Graph<Integer, Route> graph;
+	SearchState state;
 
 	private int depth;
-	private Move move;
+	private int move;
 	private double score;
-	String graphFilename;
 
-	AbstractGameState(Move move, int detectives, List<Boolean> rounds, Graph<Integer, Route> graph, String graphFilename) {
-		super(detectives, rounds, graphFilename);
+	AbstractGameState(int move, SearchState state, Graph<Integer, Route> graph, DistanceTable distances) {
 		this.graph = graph;
 		this.move = move;
-		this.graphFilename = graphFilename;
+		this.state = state;
 		depth = 0;
 		score = 0.0;
-		help = new AIHelper(this, graph);
+		help = new AIHelper(this, graph, distances);
 	}
 
 	/**
 	 * @return the move associated with the game state
 	 */
 	@Override
-	public final Move getUsedMove() {
+	public final int getUsedMove() {
 		return move;
 	}
 
 	@Override
 	abstract public double score();
 
-	final void simulateMove(Move move) {
-		play(move);
+	final void simulateMove(int move) {
+		state.apply(move);
+	}
+
+	/**
+	 * Plays the packed move and passes the turn to whoever plays next in the
+	 * tree
+	 * 
+	 * @param move
+	 *            A PackedMove
+	 */
+	abstract void playMove(int move);
+
+	/**
+	 * Takes back the last move played with playMove(Move)
+	 */
+	void undoMove() {
+		state.undo();
+	}
+
+	@Override
+	public final void apply(int move) {
+		playMove(move);
+		score = 0.0;
+		depth++;
+	}
+
+	@Override
+	public final void undo() {
+		undoMove();
+		score = 0.0;
+		depth--;
+	}
+
+	/**
+	 * Pass the turn to the next player
+	 */
+	final void nextPlayer() {
+		state.nextPlayer();
 	}
 
 	/**
@@ -59,7 +94,7 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 	 *            The location to set for MrX
 	 */
 	public final void setMrXLocation(int loc) {
-		playerMap.get(Colour.Black).setLocation(loc);
+		state.setLocation(SearchState.MRX, loc);
 	}
 
 	/**
@@ -73,15 +108,7 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 	 * state
 	 */
 	@Override
-	abstract public AINode copy(Move move);
-
-	final static Map<Ticket, Integer> createTicketMap(ScotlandYardView view, Colour c) {
-		Map<Ticket, Integer> map = new HashMap<Ticket, Integer>();
-		for (Ticket ticket : Ticket.values()) {
-			map.put(ticket, view.getPlayerTickets(c, ticket));
-		}
-		return map;
-	}
+	abstract public AINode copy(int move);
 
 	/**
 	 * @return depth at which the node is located
@@ -93,11 +120,11 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 
 	/**
 	 * Determines whether the node is terminal or not. That is, if it reached
-	 * max depth or game is over.
+	 * the given max depth or game is over.
 	 */
 	@Override
-	public boolean isTerminal() {
-		if (isGameOver() || getDepth() >= Minimax.MAX_DEPTH) {
+	public boolean isTerminal(int maxDepth) {
+		if (isGameOver() || getDepth() >= maxDepth) {
 			return true;
 		}
 		return false;
@@ -112,11 +139,51 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 	}
 
 	/**
-	 * @return a set of valid moves for the current player
+	 * Generates all the valid moves of the current player, MrX's double moves
+	 * included
 	 */
 	@Override
-	public final Set<Move> getSuccessorOptions() {
-		return validMoves(getCurrentPlayer());
+	public final void getSuccessorOptions(MoveList moves) {
+		state.generateMoves(state.getCurrentIndex(), moves);
+		if (state.getCurrentIndex() == SearchState.MRX)
+			state.addDoubleMoves(moves, moves.size(), true, true, -1);
+	}
+
+	/**
+	 * @param player
+	 * @return a set of valid moves for the given player
+	 */
+	public final Set<Move> validMoves(Colour player) {
+		return state.validMoves(state.indexOf(player));
+	}
+
+	/**
+	 * Generates the single moves of the current player, packed. MrX's double
+	 * moves are added by MoveFilterer.mrXFilter when it keeps them.
+	 * 
+	 * @param moves
+	 *            Cleared and filled with the moves
+	 */
+	final void generateMoves(MoveList moves) {
+		state.generateMoves(state.getCurrentIndex(), moves);
+	}
+
+	/**
+	 * Cheaper than looking for a MovePass in validMoves(player).
+	 * 
+	 * @param player
+	 * @return true if the player has a move other than a pass
+	 */
+	public final boolean canMove(Colour player) {
+		return state.canMove(state.indexOf(player));
+	}
+
+	/**
+	 * @return the Zobrist key of the position, independent of the depth and
+	 *         of the moves that led to it
+	 */
+	public final long getKey() {
+		return state.getKey();
 	}
 
 	/**
@@ -124,7 +191,69 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 	 * @return MrX's real location
 	 */
 	public final int getMrXRealLocation() {
-		return this.playerMap.get(Colour.Black).getLocation();
+		return state.getLocation(SearchState.MRX);
+	}
+
+	/**
+	 * @return the players in the order of play, MrX first
+	 */
+	@Override
+	public final List<Colour> getPlayers() {
+		return state.getPlayers();
+	}
+
+	@Override
+	public final Set<Colour> getWinningPlayers() {
+		return state.getWinningPlayers();
+	}
+
+	/**
+	 * @return MrX's last known location for MrX, the real location for the
+	 *         detectives
+	 */
+	@Override
+	public final int getPlayerLocation(Colour colour) {
+		if (colour == Colour.Black)
+			return state.getMrXLastKnownLocation();
+		return state.getLocation(state.indexOf(colour));
+	}
+
+	@Override
+	public final int getPlayerTickets(Colour colour, Ticket ticket) {
+		return state.getTickets(state.indexOf(colour), ticket);
+	}
+
+	@Override
+	public final boolean isGameOver() {
+		return state.isGameOver();
+	}
+
+	@Override
+	public final boolean isReady() {
+		return true;
+	}
+
+	@Override
+	public final Colour getCurrentPlayer() {
+		return state.getCurrentPlayer();
+	}
+
+	@Override
+	public final int getRound() {
+		return state.getRound();
+	}
+
+	@Override
+	public final List<Boolean> getRounds() {
+		return state.getRounds();
+	}
+
+	/**
+	 * @return an upper bound on the number of moves left until the end of the
+	 *         game, counting one move per player per round
+	 */
+	public final int getPliesLeft() {
+		return Math.max(0, getRounds().size() - 1 - getRound()) * state.getPlayerCount() + state.getPlayerCount();
 	}
 
 	/**
@@ -157,14 +286,8 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 		final int prime = 5;
 		int result = 1;
 		result = prime * result + depth;
-		result = prime * result + playerMap.get(Colour.Black).getLocation();
-		result = prime * result + playerMap.get(Colour.Blue).getLocation();
-		result = prime * result + playerMap.get(Colour.Green).getLocation();
-		result = prime * result + playerMap.get(Colour.Red).getLocation();
-		result = prime * result + playerMap.get(Colour.White).getLocation();
-		result = prime * result + playerMap.get(Colour.Yellow).getLocation();
-		result = prime * result + ((move == null) ? 0 : move.hashCode());
-		result = prime * result + round;
+		result = prime * result + state.hashCode();
+		result = prime * result + move;
 		return result;
 	}
 
@@ -184,24 +307,9 @@ abstract public class AbstractGameState extends ScotlandYardModel implements AIN
 		AbstractGameState other = (AbstractGameState) obj;
 		if (depth != other.depth)
 			return false;
-		if (playerMap.get(Colour.Black).getLocation() != other.playerMap.get(Colour.Black).getLocation())
-			return false;
-		if (playerMap.get(Colour.Blue).getLocation() != other.playerMap.get(Colour.Blue).getLocation())
-			return false;
-		if (playerMap.get(Colour.Green).getLocation() != other.playerMap.get(Colour.Green).getLocation())
-			return false;
-		if (playerMap.get(Colour.Red).getLocation() != other.playerMap.get(Colour.Red).getLocation())
-			return false;
-		if (playerMap.get(Colour.White).getLocation() != other.playerMap.get(Colour.White).getLocation())
-			return false;
-		if (playerMap.get(Colour.Yellow).getLocation() != other.playerMap.get(Colour.Yellow).getLocation())
-			return false;
-		if (move == null) {
-			if (other.move != null)
-				return false;
-		} else if (!move.equals(other.move))
+		if (!state.equals(other.state))
 			return false;
-		if (round != other.round)
+		if (move != other.move)
 			return false;
 		return true;
 	}
@@ -1,96 +1,371 @@
 package player.aiHelper;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import scotlandyard.Colour;
-import scotlandyard.Move;
 
 /**
  * Minimax with Alphabeta Further pruning is done by applying specific rules to
- * moves and filtering the moves that are not useful in any way.
+ * moves and filtering the moves that are not useful in any way. The tree is
+ * walked by applying and undoing packed moves on a single node per root move,
+ * with the moves of each depth generated into a reused MoveList, and
+ * positions already searched are looked up in a transposition table.
  */
 public class AlphaBeta extends Minimax {
 
+	/**
+	 * The transposition table holds 2^TABLE_BITS positions
+	 */
+	private static final int TABLE_BITS = 18;
+
+	/**
+	 * Most plies the quiescence search adds below the horizon: one move of
+	 * MrX and of each detective
+	 */
+	private static final int QUIESCENCE_PLIES = 6;
+
+	private final TranspositionTable table;
+
+	// One context per thread taking part in the search
+	private final ThreadLocal<SearchContext> context;
+	private final Queue<SearchContext> contexts;
+	// Nodes searched by all the threads during each completed iteration
+	private final Map<Integer, Long> iterationNodes;
+	private long countedNodes;
+	// Deepest iteration completed by the search thread
+	private int completedDepth;
+
 	public AlphaBeta(AINode root, Colour maxColour) {
 		super(root, maxColour);
+		table = new TranspositionTable(TABLE_BITS);
+		contexts = new ConcurrentLinkedQueue<SearchContext>();
+		context = ThreadLocal.withInitial(() -> {
+			SearchContext c = new SearchContext(Thread.currentThread().getName());
+			contexts.add(c);
+			return c;
+		});
+		iterationNodes = new TreeMap<Integer, Long>();
+		countedNodes = 0;
+		completedDepth = 0;
+	}
+
+	/**
+	 * @return the search context of the calling thread
+	 */
+	final SearchContext context() {
+		return context.get();
+	}
+
+	/**
+	 * Records the nodes searched by all the threads since the last completed
+	 * iteration, quiescence nodes included. Called on the search thread when an iteration completes.
+	 * 
+	 * @param depth
+	 *            Depth of the iteration
+	 */
+	final void iterationFinished(int depth) {
+		long total = nodes();
+		iterationNodes.put(depth, total - countedNodes);
+		countedNodes = total;
+		completedDepth = depth;
+	}
+
+	/**
+	 * @return the depth of the last iteration completed by the search thread,
+	 *         0 if there is none
+	 */
+	final int completedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * @return the nodes searched so far by all the threads, quiescence nodes
+	 *         included
+	 */
+	final long nodes() {
+		long total = 0;
+		for (SearchContext c : contexts)
+			total = total + c.nodes + c.quiescenceNodes;
+		return total;
+	}
+
+	/**
+	 * Prints the number of nodes searched by each thread and in each completed
+	 * iteration
+	 */
+	@Override
+	void printStatistics() {
+		for (SearchContext c : contexts)
+			System.out.println("Nodes searched by " + c.name + ": " + c.nodes + " (depth " + c.completedDepth + ", "
+					+ c.quiescenceNodes + " in quiescence)");
+		for (Map.Entry<Integer, Long> e : iterationNodes.entrySet())
+			System.out.println("Nodes searched at depth " + e.getKey() + ": " + e.getValue());
+	}
+
+	/**
+	 * Calculate moves and filter them.
+	 * @param state
+	 * @return the remaining moves
+	 */
+	final MoveList options(AINode state) {
+		MoveList moves = new MoveList();
+		options((AbstractGameState) state, moves);
+		return moves;
+	}
+
+	/**
+	 * Generates the moves of a node inside the tree, packed, and filters them.
+	 * @param state
+	 * @param moves
+	 *            Filled with the remaining moves
+	 */
+	final void options(AbstractGameState state, MoveList moves) {
+		MoveFilterer.filteredMoves(state, moves);
 	}
 
 	/**
 	 * Calculate moves, filter the moves and return a list of states for the remaining moves.
+	 * Only used at the root, the rest of the tree is searched in place.
 	 * @param root
 	 * @return
 	 */
-	private List<AINode> successors(AINode root) {
-		Set<Move> options = root.getSuccessorOptions();
-		if (((MyAIGameState) root).getCurrentPlayer() == Colour.Black)
-			return successors(root, MoveFilterer.mrXFilter(options, (MyAIGameState) root));
-		else
-			return successors(root, MoveFilterer.detectiveFilter(options, (MyAIGameState) root));
+	List<AINode> successors(AINode root) {
+		return successors(root, options(root));
 	}
 
 	/**
-	 * Run the algorithm once, creating a tree for the current MAX_DEPTH
+	 * Run the algorithm once, creating a tree for the current max depth. Each
+	 * successor of the root is a copy of it; below the root, moves are applied
+	 * and undone on that copy so no further nodes are created.
 	 * 
 	 * @param initialState
 	 *            The initial state
-	 * @return A best move
+	 * @return A best move, PackedMove.NONE if the search was stopped
 	 */
 	@Override
-	Move decision(AINode initialState) {
-		double best = maxValue(initialState, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	int decision(AINode initialState) {
+		SearchContext context = context();
+		context.maxDepth = getMaxDepth();
+		double alpha = Double.NEGATIVE_INFINITY;
+		double best = Double.NEGATIVE_INFINITY;
+		for (AINode s : successors(initialState)) {
+			double tempValue = value(s, alpha, Double.POSITIVE_INFINITY, context);
+			if (!isStop())
+				rootSearched(s, tempValue);
+			best = Math.max(best, tempValue);
+			s.setScore(tempValue);
+			storeValue(s, tempValue); //Store it for the next iteration
+			alpha = Math.max(alpha, best);
+		}
 
 		if (isStop())
-			return null;
+			return PackedMove.NONE;
 
+		context.completedDepth = context.maxDepth;
+		iterationFinished(context.maxDepth);
 		return MoveFilterer.chooseSafestMove(getSuccessors(), best);
 	}
 
-	private double maxValue(AINode state, double alpha, double beta) {
+	/**
+	 * A node is terminal if the game is over or it lies at the depth the
+	 * calling thread cuts its tree at.
+	 */
+	private boolean isTerminal(AINode state, SearchContext context) {
+		return state.getDepth() >= context.maxDepth || ((AbstractGameState) state).isGameOver();
+	}
+
+	/**
+	 * Looks the node up in the transposition table before expanding it. A
+	 * stored value searched at least as deep is used directly or to narrow the
+	 * window; otherwise its best move is searched first.
+	 * 
+	 * @return the value of the node for the player whose turn it is
+	 */
+	final double value(AINode state, double alpha, double beta, SearchContext context) {
 		if (isStop())
 			return 0.0;
-		if (state.isTerminal()) {
-			double score = state.score();
-			state.setScore(score);
-			return score;
+		context.nodes++;
+		if (isTerminal(state, context))
+			return quiescence((AbstractGameState) state, alpha, beta, 0, context);
+		long key = ((AbstractGameState) state).getKey();
+		int depth = context.maxDepth - state.getDepth();
+		int hashMove = PackedMove.NONE;
+		TranspositionTable.Entry entry = context.entry;
+		if (table.probe(key, entry)) {
+			hashMove = entry.move;
+			if (entry.depth >= depth) {
+				double stored = entry.value;
+				byte bound = entry.bound;
+				if (bound == TranspositionTable.EXACT)
+					return stored;
+				if (bound == TranspositionTable.LOWER)
+					alpha = Math.max(alpha, stored);
+				else
+					beta = Math.min(beta, stored);
+				if (alpha >= beta)
+					return stored;
+			}
 		}
+		AbstractGameState game = (AbstractGameState) state;
+		if (game.getCurrentPlayer() == getMaxColour())
+			return maxValue(game, alpha, beta, key, depth, hashMove, context);
+		return minValue(game, alpha, beta, key, depth, hashMove, context);
+	}
+
+	/**
+	 * Searches on below the horizon while a detective can catch MrX in one
+	 * move, so a capture just past the horizon is not missed. MrX has to move,
+	 * so all his moves are searched; the detectives may stand pat and only
+	 * their moves next to MrX are searched, see MoveFilterer.threatFilter.
+	 * Bounded by QUIESCENCE_PLIES and not stored in the transposition table.
+	 * 
+	 * @param ply
+	 *            Plies below the horizon
+	 * @return the value of the node for the player whose turn it is
+	 */
+	private double quiescence(AbstractGameState state, double alpha, double beta, int ply, SearchContext context) {
+		if (isStop())
+			return 0.0;
+		if (ply > 0)
+			context.quiescenceNodes++;
+		double standPat = state.score();
+		if (ply >= QUIESCENCE_PLIES || state.isGameOver() || !state.state.isMrXThreatened())
+			return standPat;
+		MoveList moves = context.moves(state.getDepth());
+		double value;
+		if (state.getCurrentPlayer() == getMaxColour()) {
+			options(state, moves);
+			if (moves.isEmpty())
+				return standPat;
+			orderMoves(state, moves, PackedMove.NONE, context);
+			value = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < moves.size(); i++) {
+				state.apply(moves.get(i));
+				value = Math.max(value, quiescence(state, alpha, beta, ply + 1, context));
+				state.undo();
+				if (value >= beta)
+					break;
+				alpha = Math.max(alpha, value);
+			}
+		} else {
+			if (standPat <= alpha)
+				return standPat;
+			beta = Math.min(beta, standPat);
+			state.generateMoves(moves);
+			MoveFilterer.threatFilter(moves, state);
+			value = standPat;
+			for (int i = 0; i < moves.size(); i++) {
+				state.apply(moves.get(i));
+				value = Math.min(value, quiescence(state, alpha, beta, ply + 1, context));
+				state.undo();
+				if (value <= alpha)
+					break;
+				beta = Math.min(beta, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Orders the moves of a node inside the tree without evaluating them: the
+	 * transposition table move first, then the killer moves of the depth, then
+	 * the rest by their history score.
+	 * 
+	 * @param state
+	 * @param moves
+	 *            Packed moves of the current player, sorted in place
+	 * @param hashMove
+	 *            Best move stored in the transposition table, may be
+	 *            PackedMove.NONE
+	 * @param context
+	 */
+	final void orderMoves(AbstractGameState state, MoveList moves, int hashMove, SearchContext context) {
+		for (int i = 0; i < moves.size(); i++)
+			moves.setScore(i, -context.history(moves.get(i)));
+		moves.sort();
+		int depth = state.getDepth();
+		moves.moveToFront(context.killer(depth, 1));
+		moves.moveToFront(context.killer(depth, 0));
+		if (hashMove != PackedMove.NONE)
+			moves.moveToFront(hashMove);
+	}
+
+	/**
+	 * Searches the position reached by one of the moves of a node, with the
+	 * window of the node.
+	 * 
+	 * @param state
+	 *            The node, left unchanged on return
+	 * @param move
+	 * @param index
+	 *            Position of the move in the ordered moves of the node
+	 * @param max
+	 *            true if the node is a MAX node
+	 * @return the value of the move
+	 */
+	double searchMove(AbstractGameState state, int move, int index, boolean max, double alpha, double beta,
+			SearchContext context) {
+		state.apply(move);
+		double value = value(state, alpha, beta, context);
+		state.undo();
+		return value;
+	}
+
+	private double maxValue(AbstractGameState state, double alpha, double beta, long key, int depth, int hashMove,
+			SearchContext context) {
+		double alphaOrig = alpha;
 		double value = Double.NEGATIVE_INFINITY;
-		List<AINode> successors = successors(state);
-		for (AINode s : successors) {
-			double tempValue = minValue(s, alpha, beta); //Score for "s"
-			value = Math.max(value, tempValue); //Score for "state"
-			s.setScore(tempValue); //Set score to the tempValue
-			storeValue(s, tempValue); //Store it for the next iteration
-			if (value >= beta)
-				return value;
+		int bestMove = PackedMove.NONE;
+		MoveList moves = context.moves(state.getDepth());
+		options(state, moves);
+		orderMoves(state, moves, hashMove, context);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			double tempValue = searchMove(state, move, i, true, alpha, beta, context); //Score for the move
+			if (tempValue > value) { //Score for "state"
+				value = tempValue;
+				bestMove = move;
+			}
+			if (value >= beta) {
+				if (!isStop())
+					context.cutoff(state.getDepth(), move, depth);
+				break;
+			}
 			alpha = Math.max(alpha, value);
 		}
+		if (!isStop())
+			table.store(key, depth, value, TranspositionTable.bound(value, alphaOrig, beta), bestMove);
 		return value;
 	}
 
-	private double minValue(AINode state, double alpha, double beta) {
-		if (isStop())
-			return 0.0;
-		if (state.isTerminal()) {
-			double score = state.score();
-			state.setScore(score);
-			return score;
-		}
+	private double minValue(AbstractGameState state, double alpha, double beta, long key, int depth, int hashMove,
+			SearchContext context) {
+		double betaOrig = beta;
 		double value = Double.POSITIVE_INFINITY;
-		List<AINode> successors = successors(state);
-		for (AINode s : successors) {
-			double tempValue;
-			if (((MyAIGameState) s).getCurrentPlayer() == getMaxColour())
-				tempValue = maxValue(s, alpha, beta);
-			else
-				tempValue = minValue(s, alpha, beta);
-			value = Math.min(value, tempValue);
-			s.setScore(tempValue);
-			storeValue(s, tempValue);
-			if (value <= alpha)
-				return value;
+		int bestMove = PackedMove.NONE;
+		MoveList moves = context.moves(state.getDepth());
+		options(state, moves);
+		orderMoves(state, moves, hashMove, context);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			double tempValue = searchMove(state, move, i, false, alpha, beta, context);
+			if (tempValue < value) {
+				value = tempValue;
+				bestMove = move;
+			}
+			if (value <= alpha) {
+				if (!isStop())
+					context.cutoff(state.getDepth(), move, depth);
+				break;
+			}
 			beta = Math.min(beta, value);
 		}
+		if (!isStop())
+			table.store(key, depth, value, TranspositionTable.bound(value, alpha, betaOrig), bestMove);
 		return value;
 	}
 
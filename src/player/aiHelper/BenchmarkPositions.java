@@ -0,0 +1,190 @@
+package player.aiHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import scotlandyard.Colour;
+import scotlandyard.Graph;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardView;
+import scotlandyard.Ticket;
+
+/**
+ *
+ * Reproducible positions for the benchmarks: games started from the standard
+ * start locations and tickets, played on by random moves among the ones
+ * MoveFilterer keeps. Each position is a view of the game, so the searches
+ * are started from it the way the players start them.
+ *
+ */
+final class BenchmarkPositions {
+
+	private static final int[] DETECTIVE_STARTS = { 13, 26, 29, 34, 50, 53, 91, 94, 103, 112, 117, 123, 138, 141,
+			155, 174 };
+	private static final int[] MRX_STARTS = { 35, 45, 51, 71, 78, 104, 106, 127, 132, 146, 166, 170, 172 };
+	private static final int[] REVEAL_ROUNDS = { 3, 8, 13, 18, 24 };
+	private static final int ROUNDS = 24;
+
+	/**
+	 * Most rounds played before a position is taken
+	 */
+	private static final int MAX_ROUNDS_PLAYED = 8;
+
+	private BenchmarkPositions() {
+	}
+
+	/**
+	 * @param graph
+	 * @param count
+	 *            Number of positions
+	 * @param seed
+	 * @param current
+	 *            Player to move in the positions, Black or a detective
+	 * @return positions of games with five detectives that are not over
+	 */
+	static List<Position> positions(Graph<Integer, Route> graph, int count, long seed, Colour current) {
+		Random random = new Random(seed);
+		List<Position> positions = new ArrayList<Position>();
+		MoveList moves = new MoveList();
+		while (positions.size() < count) {
+			View start = start(random);
+			AbstractGameState game = (AbstractGameState) MyAIGameState.createGameState(null, start,
+					start.mrXLocation, graph);
+			int plies = random.nextInt(MAX_ROUNDS_PLAYED * start.players.size() + 1);
+			for (int i = 0; i < plies || game.getCurrentPlayer() != current; i++) {
+				if (game.isGameOver())
+					break;
+				MoveFilterer.filteredMoves(game, moves);
+				if (moves.isEmpty())
+					break;
+				game.apply(moves.get(random.nextInt(moves.size())));
+			}
+			if (!game.isGameOver() && game.getCurrentPlayer() == current)
+				positions.add(new Position(View.of(game.state), game.getMrXRealLocation()));
+		}
+		return positions;
+	}
+
+	private static View start(Random random) {
+		View view = new View();
+		view.players = Arrays.asList(Colour.values());
+		int[] detectives = DETECTIVE_STARTS.clone();
+		for (int i = 0; i < view.players.size(); i++) {
+			Colour colour = view.players.get(i);
+			if (colour == Colour.Black) {
+				view.mrXLocation = MRX_STARTS[random.nextInt(MRX_STARTS.length)];
+				view.locations[i] = 0;
+				view.tickets[i] = new int[] { 4, 3, 3, 2, 5 };
+			} else {
+				// Distinct starts: swap the one taken to the end of the range
+				int j = random.nextInt(detectives.length - i + 1);
+				view.locations[i] = detectives[j];
+				detectives[j] = detectives[detectives.length - i];
+				view.tickets[i] = new int[] { 11, 8, 4, 0, 0 };
+			}
+		}
+		view.current = Colour.Black;
+		view.round = 0;
+		view.rounds = new ArrayList<Boolean>();
+		for (int r = 0; r <= ROUNDS; r++)
+			view.rounds.add(false);
+		for (int r : REVEAL_ROUNDS)
+			view.rounds.set(r, true);
+		return view;
+	}
+
+	/**
+	 * A position and where MrX really is
+	 */
+	static final class Position {
+
+		final ScotlandYardView view;
+		final int mrXLocation;
+
+		Position(ScotlandYardView view, int mrXLocation) {
+			this.view = view;
+			this.mrXLocation = mrXLocation;
+		}
+
+	}
+
+	/**
+	 * The game as the detectives see it: MrX is at his last known location
+	 */
+	private static final class View implements ScotlandYardView {
+
+		List<Colour> players;
+		final int[] locations = new int[Colour.values().length];
+		final int[][] tickets = new int[Colour.values().length][];
+		Colour current;
+		int round;
+		List<Boolean> rounds;
+		int mrXLocation;
+
+		static View of(SearchState state) {
+			View view = new View();
+			view.players = state.getPlayers();
+			for (int i = 0; i < state.getPlayerCount(); i++) {
+				view.locations[i] = i == SearchState.MRX ? state.getMrXLastKnownLocation() : state.getLocation(i);
+				view.tickets[i] = new int[Ticket.values().length];
+				for (Ticket ticket : Ticket.values())
+					view.tickets[i][ticket.ordinal()] = state.getTickets(i, ticket);
+			}
+			view.current = state.getCurrentPlayer();
+			view.round = state.getRound();
+			view.rounds = state.getRounds();
+			return view;
+		}
+
+		@Override
+		public List<Colour> getPlayers() {
+			return players;
+		}
+
+		@Override
+		public Set<Colour> getWinningPlayers() {
+			return new HashSet<Colour>();
+		}
+
+		@Override
+		public int getPlayerLocation(Colour colour) {
+			return locations[players.indexOf(colour)];
+		}
+
+		@Override
+		public int getPlayerTickets(Colour colour, Ticket ticket) {
+			return tickets[players.indexOf(colour)][ticket.ordinal()];
+		}
+
+		@Override
+		public boolean isGameOver() {
+			return false;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public Colour getCurrentPlayer() {
+			return current;
+		}
+
+		@Override
+		public int getRound() {
+			return round;
+		}
+
+		@Override
+		public List<Boolean> getRounds() {
+			return rounds;
+		}
+
+	}
+
+}
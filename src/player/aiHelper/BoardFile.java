@@ -0,0 +1,216 @@
+package player.aiHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import scotlandyard.Edge;
+import scotlandyard.Graph;
+import scotlandyard.Node;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Precompiled binary form of a board: the node and edge lists, the
+ * compressed sparse row adjacency with transport bitmasks and the three
+ * all-pairs distance tables. Loading maps the file read-only, so the distance
+ * tables are used straight from the page cache and shared by every JVM on the
+ * machine that loads the same file. Written by the board target of build.xml.
+ *
+ * Layout, big endian: magic, version, size, node count, edge count; the node
+ * ids; each edge as source, target, route ordinal (one byte); size + 1 CSR
+ * offsets, the CSR targets, the CSR route masks (one byte each); then the
+ * general, taxi and taxi and bus tables, size * size bytes each.
+ *
+ */
+public class BoardFile {
+
+	private static final int MAGIC = 0x53594231; // "SYB1"
+	private static final int VERSION = 1;
+
+	/**
+	 * Magic, version, size, node count and edge count
+	 */
+	private static final int HEADER_BYTES = 20;
+
+	private BoardFile() {
+	}
+
+	/**
+	 * @param graphFilename
+	 * @return the name of the precompiled board of a graph file, i.e. the same
+	 *         name with the extension .bin
+	 */
+	public static String boardFilename(String graphFilename) {
+		int dot = graphFilename.lastIndexOf('.');
+		if (dot <= graphFilename.lastIndexOf(File.separatorChar))
+			return graphFilename + ".bin";
+		return graphFilename.substring(0, dot) + ".bin";
+	}
+
+	/**
+	 * Reads a graph file and writes its precompiled board.
+	 *
+	 * @param graphFilename
+	 * @param boardFilename
+	 * @throws IOException
+	 */
+	public static void compile(String graphFilename, String boardFilename) throws IOException {
+		Graph<Integer, Route> graph = new ScotlandYardGraphReader().readGraph(graphFilename);
+		DistanceTable distances = DistanceTable.forGraph(graph);
+		CompactGraph compactGraph = distances.getCompactGraph();
+		int size = compactGraph.size();
+
+		List<Integer> nodes = new ArrayList<Integer>();
+		for (Node<Integer> node : graph.getNodes())
+			nodes.add(node.data());
+		Collections.sort(nodes);
+		List<Edge<Integer, Route>> edges = new ArrayList<Edge<Integer, Route>>(graph.getEdges());
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(boardFilename)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeInt(nodes.size());
+			out.writeInt(edges.size());
+			for (int node : nodes)
+				out.writeInt(node);
+			for (Edge<Integer, Route> edge : edges) {
+				out.writeInt(edge.source());
+				out.writeInt(edge.target());
+				out.writeByte(edge.data().ordinal());
+			}
+			for (int node = 0; node <= size; node++)
+				out.writeInt(node < size ? compactGraph.edgesStart(node) : compactGraph.edgesEnd(size - 1));
+			int edgeEnds = compactGraph.edgesEnd(size - 1);
+			for (int e = 0; e < edgeEnds; e++)
+				out.writeInt(compactGraph.target(e));
+			for (int e = 0; e < edgeEnds; e++)
+				out.writeByte(compactGraph.route(e));
+			for (int source = 0; source < size; source++)
+				for (int target = 0; target < size; target++)
+					out.writeByte(distances.general(source, target));
+			for (int source = 0; source < size; source++)
+				for (int target = 0; target < size; target++)
+					out.writeByte(distances.taxi(source, target));
+			for (int source = 0; source < size; source++)
+				for (int target = 0; target < size; target++)
+					out.writeByte(distances.taxiBus(source, target));
+		}
+	}
+
+	/**
+	 * Maps a precompiled board and registers its distance tables with
+	 * DistanceTable.forGraph.
+	 *
+	 * @param boardFilename
+	 * @return the graph of the board
+	 * @throws IOException
+	 *             if the file cannot be read, is not a board or its length
+	 *             does not match its header, e.g. because it was only partly
+	 *             written
+	 */
+	public static Graph<Integer, Route> load(String boardFilename) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile file = new RandomAccessFile(boardFilename, "r");
+				FileChannel channel = file.getChannel()) {
+			// The mapping stays valid once the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		check(buffer.remaining() >= HEADER_BYTES, boardFilename);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException(boardFilename + " is not a precompiled board");
+		int size = buffer.getInt();
+		int nodeCount = buffer.getInt();
+		int edgeCount = buffer.getInt();
+		check(size > 0 && nodeCount >= 0 && edgeCount >= 0, boardFilename);
+		// Everything up to the edges of the CSR adjacency, whose number is the
+		// last offset
+		long fixedBytes = HEADER_BYTES + 4L * nodeCount + 9L * edgeCount + 4L * (size + 1);
+		check(buffer.capacity() >= fixedBytes, boardFilename);
+		int edgeEnds = buffer.getInt((int) fixedBytes - 4);
+		check(edgeEnds >= 0 && buffer.capacity() == fixedBytes + 5L * edgeEnds + 3L * size * size, boardFilename);
+
+		Graph<Integer, Route> graph = new Graph<Integer, Route>();
+		for (int i = 0; i < nodeCount; i++)
+			graph.add(new Node<Integer>(buffer.getInt()));
+		Route[] routes = Route.values();
+		for (int i = 0; i < edgeCount; i++) {
+			int source = buffer.getInt();
+			int target = buffer.getInt();
+			int route = buffer.get();
+			check(route >= 0 && route < routes.length, boardFilename);
+			graph.add(new Edge<Integer, Route>(source, target, routes[route]));
+		}
+
+		int[] offsets = new int[size + 1];
+		for (int i = 0; i <= size; i++) {
+			offsets[i] = buffer.getInt();
+			check(offsets[i] >= (i > 0 ? offsets[i - 1] : 0), boardFilename);
+		}
+		int[] targets = new int[edgeEnds];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = buffer.getInt();
+			check(targets[i] >= 0 && targets[i] < size, boardFilename);
+		}
+		byte[] masks = new byte[edgeEnds];
+		buffer.get(masks);
+		CompactGraph compactGraph = new CompactGraph(offsets, targets, masks);
+
+		ByteBuffer general = table(buffer, size);
+		ByteBuffer taxi = table(buffer, size);
+		ByteBuffer taxiBus = table(buffer, size);
+		DistanceTable.register(graph, new DistanceTable(compactGraph, general, taxi, taxiBus));
+		return graph;
+	}
+
+	/**
+	 * @param valid
+	 * @param boardFilename
+	 * @throws IOException
+	 *             if valid is false
+	 */
+	private static void check(boolean valid, String boardFilename) throws IOException {
+		if (!valid)
+			throw new IOException(boardFilename + " is truncated or corrupt");
+	}
+
+	/**
+	 * @return a view of the next size * size bytes of buffer, which is moved
+	 *         past them
+	 */
+	private static ByteBuffer table(ByteBuffer buffer, int size) {
+		ByteBuffer table = buffer.slice();
+		table.limit(size * size);
+		buffer.position(buffer.position() + size * size);
+		return table;
+	}
+
+	/**
+	 * Compiles a graph file: BoardFile graph.txt [graph.bin]
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: BoardFile <graph file> [board file]");
+			System.exit(1);
+		}
+		String boardFilename = args.length > 1 ? args[1] : boardFilename(args[0]);
+		compile(args[0], boardFilename);
+		System.out.println("Wrote " + boardFilename);
+	}
+
+}
@@ -0,0 +1,202 @@
+package player.aiHelper;
+
+import java.util.Arrays;
+
+import scotlandyard.Edge;
+import scotlandyard.Graph;
+import scotlandyard.Node;
+import scotlandyard.Route;
+
+/**
+ *
+ * Compressed sparse row representation of the board. The neighbours of a
+ * location are stored contiguously in one int array and each edge carries a
+ * transport bitmask, so breadth first searches run over plain arrays without
+ * allocating.
+ *
+ */
+public class CompactGraph {
+
+	public static final int TAXI = 1;
+	public static final int BUS = 2;
+	public static final int UNDERGROUND = 4;
+	public static final int BOAT = 8;
+	public static final int ALL = TAXI | BUS | UNDERGROUND | BOAT;
+
+	/**
+	 * Distance stored for locations that cannot be reached.
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final int size;
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] routes;
+
+	/**
+	 * Converts the given graph. Edges are undirected, so each edge is stored
+	 * once for each of its ends.
+	 *
+	 * @param graph
+	 */
+	public CompactGraph(Graph<Integer, Route> graph) {
+		int maxNode = 0;
+		for (Node<Integer> node : graph.getNodes())
+			maxNode = Math.max(maxNode, node.data());
+		size = maxNode + 1;
+
+		offsets = new int[size + 1];
+		for (Edge<Integer, Route> edge : graph.getEdges()) {
+			offsets[edge.source() + 1]++;
+			offsets[edge.target() + 1]++;
+		}
+		for (int i = 0; i < size; i++)
+			offsets[i + 1] += offsets[i];
+
+		targets = new int[offsets[size]];
+		routes = new byte[offsets[size]];
+		int[] next = Arrays.copyOf(offsets, size);
+		for (Edge<Integer, Route> edge : graph.getEdges()) {
+			int source = edge.source();
+			int target = edge.target();
+			byte mask = (byte) mask(edge.data());
+			targets[next[source]] = target;
+			routes[next[source]++] = mask;
+			targets[next[target]] = source;
+			routes[next[target]++] = mask;
+		}
+	}
+
+	/**
+	 * Wraps arrays that are already in compressed sparse row form, e.g. read
+	 * from a precompiled board.
+	 *
+	 * @param offsets
+	 *            size + 1 edge offsets
+	 * @param targets
+	 * @param routes
+	 */
+	CompactGraph(int[] offsets, int[] targets, byte[] routes) {
+		this.size = offsets.length - 1;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.routes = routes;
+	}
+
+	/**
+	 * @param route
+	 * @return the transport bitmask of route
+	 */
+	public static int mask(Route route) {
+		switch (route) {
+		case Taxi:
+			return TAXI;
+		case Bus:
+			return BUS;
+		case Underground:
+			return UNDERGROUND;
+		default:
+			return BOAT;
+		}
+	}
+
+	/**
+	 * @param taxi
+	 * @param bus
+	 * @param under
+	 * @return the transport bitmask that allows the given transports
+	 */
+	public static int mask(boolean taxi, boolean bus, boolean under) {
+		return (taxi ? TAXI : 0) | (bus ? BUS : 0) | (under ? UNDERGROUND : 0);
+	}
+
+	/**
+	 * @return one more than the largest location of the board, i.e. the length
+	 *         of arrays indexed by location
+	 */
+	public final int size() {
+		return size;
+	}
+
+	/**
+	 * @param node
+	 * @return index of the first edge of node
+	 */
+	public final int edgesStart(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * @param node
+	 * @return index after the last edge of node
+	 */
+	public final int edgesEnd(int node) {
+		return offsets[node + 1];
+	}
+
+	/**
+	 * @param edge
+	 * @return the location edge leads to
+	 */
+	public final int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge
+	 * @return the transport bitmask of edge
+	 */
+	public final int route(int edge) {
+		return routes[edge];
+	}
+
+	/**
+	 * Breadth first search from source using only edges whose transport is in
+	 * mask. All edges have length 1. Does not allocate; dist and queue must
+	 * have at least size() elements.
+	 *
+	 * @param source
+	 * @param mask
+	 *            Allowed transports
+	 * @param dist
+	 *            Filled with the distance of each location or UNREACHABLE
+	 * @param queue
+	 *            Work array
+	 */
+	public final void bfs(int source, int mask, int[] dist, int[] queue) {
+		Arrays.fill(dist, 0, size, UNREACHABLE);
+		int head = 0;
+		int tail = 0;
+		dist[source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int current = queue[head++];
+			int nextDist = dist[current] + 1;
+			for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+				int neighbour = targets[e];
+				if ((routes[e] & mask) != 0 && dist[neighbour] == UNREACHABLE) {
+					dist[neighbour] = nextDist;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Distances from source with the same semantics as the old Dijkstra
+	 * runner: taxi, bus and underground flags select the usable transports.
+	 *
+	 * @param source
+	 * @param taxi
+	 * @param bus
+	 * @param under
+	 * @return array indexed by location with the distance from source or
+	 *         UNREACHABLE
+	 */
+	public int[] distances(int source, boolean taxi, boolean bus, boolean under) {
+		int[] dist = new int[size];
+		bfs(source, mask(taxi, bus, under), dist, new int[size]);
+		return dist;
+	}
+
+}
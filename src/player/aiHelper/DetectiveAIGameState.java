@@ -1,93 +1,154 @@
 package player.aiHelper;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Set;
 
 import scotlandyard.Colour;
 import scotlandyard.Graph;
 import scotlandyard.Move;
-import scotlandyard.MoveDouble;
-import scotlandyard.MoveTicket;
 import scotlandyard.Route;
 import scotlandyard.ScotlandYardView;
+import scotlandyard.Ticket;
 
 public class DetectiveAIGameState extends AbstractGameState {
 
-	private Set<Integer> mrXPossibleLocations;
-	private Colour detectiveColour;
+	/**
+	 * Bounds of score(), reached only when the game is over
+	 */
+	public static final double MAX_SCORE = 10000;
+	public static final double MIN_SCORE = -10000;
 
-	private DetectiveAIGameState(Colour detectiveColour, Set<Integer> mrXPossibleLocations, Move move, int detectives,
-			List<Boolean> rounds, Graph<Integer, Route> graph, String graphFilename) {
+	private static final Ticket[] tickets = Ticket.values();
 
-		super(move, detectives, rounds, graph, graphFilename);
+	private LocationSet mrXPossibleLocations;
+	private MrXBelief mrXBelief;
+	private Colour detectiveColour;
+	// MrX's possible locations before each move played with apply(). The sets
+	// are reused, only the first previousCount are in use.
+	private LocationSet[] previousLocations;
+	private MrXBelief[] previousBeliefs;
+	private int previousCount;
+	// Work set for updating mrXPossibleLocations
+	private LocationSet scratch;
+
+	private DetectiveAIGameState(Colour detectiveColour, LocationSet mrXPossibleLocations, MrXBelief mrXBelief,
+			int move, SearchState state, Graph<Integer, Route> graph, DistanceTable distances) {
+
+		super(move, state, graph, distances);
 		this.mrXPossibleLocations = mrXPossibleLocations;
+		this.mrXBelief = mrXBelief;
 		this.detectiveColour = detectiveColour;
+		this.previousLocations = new LocationSet[0];
+		this.previousBeliefs = new MrXBelief[0];
+		this.previousCount = 0;
+		this.scratch = new LocationSet(mrXPossibleLocations);
 	}
 
 	/**
 	 * Score is -Sum(distance(detective,location) location:mrXPossibleLocations)
-	 * If MrX wins, returns -10000, if detectives win, return 10000.
+	 * If MrX wins, returns MIN_SCORE, if detectives win, return MAX_SCORE.
+	 * Other scores are kept strictly between the two.
 	 * 
 	 * @return a score for current game state
 	 */
 	@Override
 	public double score() {
 		double score = 0.0;
-		Set<Colour> winners = this.winners;
+		Set<Colour> winners = getWinningPlayers();
 		if (!winners.isEmpty()) {
-			if (!getWinningPlayers().contains(Colour.Black))
-				return 10000;
+			if (!winners.contains(Colour.Black))
+				return MAX_SCORE;
 			else
-				return -10000;
+				return MIN_SCORE;
 		}
-		Map<Integer, Double> distanceSourceLocation = help.getGeneralDistances(getPlayerLocation(detectiveColour));
-		for (int loc : mrXPossibleLocations) {
-			score = score + distanceSourceLocation.get(loc);
+		DistanceTable distances = help.getDistanceTable();
+		int detectiveLocation = getPlayerLocation(detectiveColour);
+		for (int loc = mrXPossibleLocations.next(0); loc >= 0; loc = mrXPossibleLocations.next(loc + 1)) {
+			score = score + DistanceTable.toDouble(distances.general(detectiveLocation, loc));
 		}
-		score = -score;
+		score = Math.max(MIN_SCORE + 1, -score);
 
 		return score;
 	}
 
 	@Override
 	public final void simulateMove() {
-		simulateMove(getUsedMove());
+		play(getUsedMove());
+	}
+
+	@Override
+	final void playMove(int move) {
+		if (previousCount == previousLocations.length) {
+			previousLocations = Arrays.copyOf(previousLocations, previousCount * 2 + 4);
+			previousBeliefs = Arrays.copyOf(previousBeliefs, previousLocations.length);
+			for (int i = previousCount; i < previousLocations.length; i++) {
+				previousLocations[i] = new LocationSet(mrXPossibleLocations);
+				previousBeliefs[i] = new MrXBelief(mrXBelief);
+			}
+		}
+		previousBeliefs[previousCount].set(mrXBelief);
+		previousLocations[previousCount++].set(mrXPossibleLocations);
+		play(move);
+	}
+
+	/**
+	 * Plays the move, passes the turn between MrX and the detective and
+	 * updates MrX's possible locations
+	 * 
+	 * @param move
+	 */
+	private void play(int move) {
+		simulateMove(move);
 
-		if (getUsedMove().colour == detectiveColour)
+		int colour = PackedMove.colour(move);
+		if (colour == detectiveColour.ordinal())
 			changeColourTo(Colour.Black);
 		else
 			changeColourTo(detectiveColour);
 
-		Move move = getUsedMove();
-		if (move instanceof MoveTicket) {
-			MoveTicket mt = (MoveTicket) move;
-			if (move.colour == Colour.Black) {
-				mrXPossibleLocations = help.calculatePossibleMrXLocations(mrXPossibleLocations, mt.ticket);
-			} else {
-				mrXPossibleLocations.remove(mt.target);
-			}
-		} else if (move instanceof MoveDouble) {
-			MoveDouble md = (MoveDouble) move;
-			mrXPossibleLocations = help.calculatePossibleMrXLocations(mrXPossibleLocations, md.move1.ticket);
-			mrXPossibleLocations = help.calculatePossibleMrXLocations(mrXPossibleLocations, md.move2.ticket);
+		if (PackedMove.isPass(move))
+			return;
+		if (colour == Colour.Black.ordinal()) {
+			updateMrXLocations(tickets[PackedMove.ticket(move)]);
+			if (PackedMove.isDouble(move))
+				updateMrXLocations(tickets[PackedMove.ticket2(move)]);
+		} else {
+			int target = PackedMove.target(move);
+			mrXPossibleLocations.remove(target);
+			mrXBelief.remove(target);
+			mrXBelief.normalise();
 		}
+	}
 
+	/**
+	 * Updates MrX's possible locations after he used the ticket
+	 * 
+	 * @param ticket
+	 */
+	private void updateMrXLocations(Ticket ticket) {
+		scratch.set(mrXPossibleLocations);
+		help.calculatePossibleMrXLocations(scratch, ticket, mrXPossibleLocations);
+		help.updateMrXBelief(mrXBelief, ticket);
+	}
+
+	@Override
+	final void undoMove() {
+		super.undoMove();
+		mrXPossibleLocations.set(previousLocations[--previousCount]);
+		mrXBelief.set(previousBeliefs[previousCount]);
 	}
 
 	private void changeColourTo(Colour c) {
-		while (getCurrentPlayer() != c)
-			nextPlayer();
+		state.setCurrentPlayer(c);
 	}
 
 	@Override
-	public AINode copy(Move move) {
-		if (move == null) {
+	public AINode copy(int move) {
+		if (move == PackedMove.NONE) {
 			move = getUsedMove();
 		}
-		AINode state = createGameState(detectiveColour, mrXPossibleLocations, move, this, getMrXRealLocation(), graph,
-				graphFilename);
+		AINode state = new DetectiveAIGameState(detectiveColour, new LocationSet(mrXPossibleLocations),
+				new MrXBelief(mrXBelief), move, this.state.copy(), graph, help.getDistanceTable());
 
 		state.setDepth(this.getDepth() + 1);
 		return state;
@@ -99,33 +160,29 @@ public class DetectiveAIGameState extends AbstractGameState {
 	 * @return
 	 */
 	public AINode copy() {
-		return copy(null);
+		return copy(PackedMove.NONE);
 	}
 
 	/**
 	 * @return the mrXPossibleLocations
 	 */
-	public Set<Integer> getMrXPossibleLocations() {
+	public LocationSet getMrXPossibleLocations() {
 		return mrXPossibleLocations;
 	}
 
-	public static AINode createGameState(Colour detectiveColour, Set<Integer> mrXPossibleLocations, Move move,
-			ScotlandYardView view, int location, Graph<Integer, Route> graph, String graphFilename) {
-
-		DetectiveAIGameState newModel = new DetectiveAIGameState(detectiveColour, new HashSet<Integer>(
-				mrXPossibleLocations), move, view.getPlayers().size() - 1, view.getRounds(), graph, graphFilename);
-
-		newModel.join(null, Colour.Black, location, createTicketMap(view, Colour.Black));
-		newModel.join(null, Colour.Blue, view.getPlayerLocation(Colour.Blue), createTicketMap(view, Colour.Blue));
-		newModel.join(null, Colour.Green, view.getPlayerLocation(Colour.Green), createTicketMap(view, Colour.Green));
-		newModel.join(null, Colour.Red, view.getPlayerLocation(Colour.Red), createTicketMap(view, Colour.Red));
-		newModel.join(null, Colour.White, view.getPlayerLocation(Colour.White), createTicketMap(view, Colour.White));
-		newModel.join(null, Colour.Yellow, view.getPlayerLocation(Colour.Yellow), createTicketMap(view, Colour.Yellow));
-		while (view.getCurrentPlayer() != newModel.getCurrentPlayer())
-			newModel.nextPlayer();
-		newModel.mrXLastKnownLocation = view.getPlayerLocation(Colour.Black);
-		newModel.round = view.getRound();
+	/**
+	 * @return the probability of each of MrX's possible locations
+	 */
+	public MrXBelief getMrXBelief() {
+		return mrXBelief;
+	}
 
-		return newModel;
+	public static AINode createGameState(Colour detectiveColour, LocationSet mrXPossibleLocations,
+			MrXBelief mrXBelief, Move move, ScotlandYardView view, int location, Graph<Integer, Route> graph) {
+		DistanceTable distances = DistanceTable.forGraph(graph);
+		return new DetectiveAIGameState(detectiveColour, new LocationSet(mrXPossibleLocations),
+				new MrXBelief(mrXBelief), move == null ? PackedMove.NONE : PackedMove.encode(move),
+				SearchState.fromView(view, location, distances),
+				graph, distances);
 	}
 }
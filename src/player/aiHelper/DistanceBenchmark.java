@@ -0,0 +1,149 @@
+package player.aiHelper;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import scotlandyard.Edge;
+import scotlandyard.Graph;
+import scotlandyard.Node;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Checks the breadth first searches of CompactGraph against the Dijkstra
+ * class they replaced, copied from before the change, and times building the
+ * three distance tables with each. Run by the
+ * benchmark target of build.xml: ant benchmark -Dbenchmark=DistanceBenchmark
+ *
+ */
+public class DistanceBenchmark {
+
+	/**
+	 * Transports of the general, taxi and taxi and bus tables
+	 */
+	private static final boolean[][] TABLES = { { true, true, true }, { true, false, false }, { true, true, false } };
+
+	private static final int RUNS = 5;
+
+	private DistanceBenchmark() {
+	}
+
+	/**
+	 * @param args
+	 *            The graph file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		Graph<Integer, Route> graph = new ScotlandYardGraphReader().readGraph(args[0]);
+		CompactGraph compactGraph = new CompactGraph(graph);
+
+		int compared = 0;
+		int different = 0;
+		for (boolean[] t : TABLES) {
+			for (Node<Integer> node : graph.getNodes()) {
+				int[] bfs = compactGraph.distances(node.data(), t[0], t[1], t[2]);
+				Map<Integer, Double> dijkstra = Dijkstra.dijkstraRunner(graph, node.data(), t[0], t[1], t[2]);
+				for (Node<Integer> target : graph.getNodes()) {
+					compared++;
+					if (DistanceTable.toDouble(bfs[target.data()]) != dijkstra.get(target.data()))
+						different++;
+				}
+			}
+		}
+		System.out.println(compared + " distances compared, " + different + " different");
+
+		long bfsTime = Long.MAX_VALUE;
+		long dijkstraTime = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			for (boolean[] t : TABLES) {
+				for (Node<Integer> node : graph.getNodes())
+					compactGraph.distances(node.data(), t[0], t[1], t[2]);
+			}
+			bfsTime = Math.min(bfsTime, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (boolean[] t : TABLES) {
+				for (Node<Integer> node : graph.getNodes())
+					Dijkstra.dijkstraRunner(graph, node.data(), t[0], t[1], t[2]);
+			}
+			dijkstraTime = Math.min(dijkstraTime, System.nanoTime() - start);
+		}
+		System.out.println("All tables, best of " + RUNS + ": breadth first search " + bfsTime / 1000000
+				+ "ms, Dijkstra " + dijkstraTime / 1000000 + "ms");
+	}
+
+	/**
+	 * The Dijkstra class removed when the distances moved to CompactGraph,
+	 * unchanged apart from being nested here: the distances and predecessors
+	 * are hash maps and the queue holds locations ordered by their current
+	 * distance.
+	 */
+	private static class Dijkstra {
+
+		private Map<Integer, Double> distFromSrc;
+		private Map<Integer, Integer> predecessors;
+		private Graph<Integer, Route> graph;
+		private PriorityQueue<Integer> queue;
+		private boolean taxi;
+		private boolean bus;
+		private boolean under;
+
+		private Dijkstra(Graph<Integer, Route> graph, int source, boolean taxi, boolean bus, boolean under) {
+			distFromSrc = new HashMap<Integer, Double>();
+			predecessors = new HashMap<Integer, Integer>();
+			queue = new PriorityQueue<Integer>(new NodeComparator());
+			this.graph = graph;
+			this.taxi = taxi;
+			this.bus = bus;
+			this.under = under;
+			distFromSrc.put(source, 0.0);
+			for (Node<Integer> node : graph.getNodes()) {
+				if (node.data() != source) {
+					distFromSrc.put(node.data(), Double.POSITIVE_INFINITY);
+					predecessors.put(node.data(), null);
+				}
+			}
+			queue.add(source);
+		}
+
+		private void dijkstraRun() {
+			while (!queue.isEmpty()) {
+				int currentNode = queue.remove();
+				for (Edge<Integer, Route> edge : graph.getEdges(currentNode)) {
+					if (taxi && edge.data() == Route.Taxi || bus && edge.data() == Route.Bus || under
+							&& edge.data() == Route.Underground) {
+						int neighbor = edge.other(currentNode);
+						// assume all length 1
+						double newDist = distFromSrc.get(currentNode) + 1;
+						if (newDist < distFromSrc.get(neighbor)) {
+							distFromSrc.put(neighbor, newDist);
+							predecessors.put(neighbor, currentNode);
+							if (!queue.contains(neighbor)) {
+								queue.add(neighbor);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		static Map<Integer, Double> dijkstraRunner(Graph<Integer, Route> graph, int source, boolean taxi,
+				boolean bus, boolean under) {
+			Dijkstra run = new Dijkstra(graph, source, taxi, bus, under);
+			run.dijkstraRun();
+			return run.distFromSrc;
+		}
+
+		class NodeComparator implements Comparator<Integer> {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return distFromSrc.get(o1).compareTo(distFromSrc.get(o2));
+			}
+		}
+	}
+
+}
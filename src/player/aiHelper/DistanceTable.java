@@ -0,0 +1,209 @@
+package player.aiHelper;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import scotlandyard.Graph;
+import scotlandyard.Node;
+import scotlandyard.Route;
+
+/**
+ *
+ * All-pairs shortest distances of the board, one table per transport mask
+ * (taxi, taxi and bus, all transports). The tables are built once per graph
+ * and shared read-only by every player and every game state. They are either
+ * computed from the graph or read from a precompiled board, see BoardFile, in
+ * which case they stay in the memory mapped file.
+ *
+ */
+public class DistanceTable {
+
+	/**
+	 * Value stored for a location that cannot be reached from the source.
+	 */
+	public static final byte UNREACHABLE = Byte.MAX_VALUE;
+
+	/**
+	 * Locations used by cornerDistance.
+	 */
+	private static final int[] cornerLocations = { 2, 7, 30, 189, 162, 5, 4 };
+
+	private static final Map<Graph<Integer, Route>, DistanceTable> tables = new IdentityHashMap<Graph<Integer, Route>, DistanceTable>();
+
+	private final int size;
+	private final ByteBuffer general;
+	private final ByteBuffer taxi;
+	private final ByteBuffer taxiBus;
+
+	private final CompactGraph compactGraph;
+	private final MrXTracker mrXTracker;
+
+	// Features of each location that only depend on the board
+	private final byte[] cornerDistance;
+	private final boolean[] boat;
+
+	/**
+	 * @param compactGraph
+	 * @param general
+	 *            size * size distances, indexed by source * size + target
+	 * @param taxi
+	 * @param taxiBus
+	 */
+	DistanceTable(CompactGraph compactGraph, ByteBuffer general, ByteBuffer taxi, ByteBuffer taxiBus) {
+		this.compactGraph = compactGraph;
+		this.size = compactGraph.size();
+		this.general = general;
+		this.taxi = taxi;
+		this.taxiBus = taxiBus;
+		this.mrXTracker = new MrXTracker(compactGraph);
+		this.cornerDistance = new byte[size];
+		this.boat = new boolean[size];
+		for (int location = 0; location < size; location++) {
+			int min = UNREACHABLE;
+			for (int corner : cornerLocations) {
+				if (corner < size)
+					min = Math.min(min, general(location, corner));
+			}
+			cornerDistance[location] = (byte) min;
+			for (int e = compactGraph.edgesStart(location); e < compactGraph.edgesEnd(location); e++) {
+				if (compactGraph.route(e) == CompactGraph.BOAT)
+					boat[location] = true;
+			}
+		}
+	}
+
+	/**
+	 * Computes the tables of a graph with a breadth first search from every
+	 * location.
+	 */
+	private static DistanceTable build(Graph<Integer, Route> graph) {
+		CompactGraph compactGraph = new CompactGraph(graph);
+		int size = compactGraph.size();
+		byte[] general = new byte[size * size];
+		byte[] taxi = new byte[size * size];
+		byte[] taxiBus = new byte[size * size];
+		int[] dist = new int[size];
+		int[] queue = new int[size];
+		for (Node<Integer> node : graph.getNodes()) {
+			int source = node.data();
+			fill(compactGraph, general, source, CompactGraph.mask(true, true, true), dist, queue);
+			fill(compactGraph, taxi, source, CompactGraph.mask(true, false, false), dist, queue);
+			fill(compactGraph, taxiBus, source, CompactGraph.mask(true, true, false), dist, queue);
+		}
+		return new DistanceTable(compactGraph, ByteBuffer.wrap(general), ByteBuffer.wrap(taxi),
+				ByteBuffer.wrap(taxiBus));
+	}
+
+	private static void fill(CompactGraph compactGraph, byte[] table, int source, int mask, int[] dist,
+			int[] queue) {
+		int size = compactGraph.size();
+		compactGraph.bfs(source, mask, dist, queue);
+		for (int target = 0; target < size; target++)
+			table[source * size + target] = dist[target] < UNREACHABLE ? (byte) dist[target] : UNREACHABLE;
+	}
+
+	/**
+	 * Returns the distance table of the given graph, building it the first
+	 * time the graph is seen.
+	 *
+	 * @param graph
+	 * @return the shared distance table of graph
+	 */
+	public static synchronized DistanceTable forGraph(Graph<Integer, Route> graph) {
+		DistanceTable table = tables.get(graph);
+		if (table == null) {
+			table = build(graph);
+			tables.put(graph, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Makes forGraph return the given table for graph, e.g. one read from a
+	 * precompiled board.
+	 *
+	 * @param graph
+	 * @param table
+	 *            The distance table of graph
+	 */
+	static synchronized void register(Graph<Integer, Route> graph, DistanceTable table) {
+		tables.put(graph, table);
+	}
+
+	/**
+	 * @return the compact graph the table was built from
+	 */
+	public final CompactGraph getCompactGraph() {
+		return compactGraph;
+	}
+
+	/**
+	 * @return the tracker of MrX's possible locations on the same graph
+	 */
+	public final MrXTracker getMrXTracker() {
+		return mrXTracker;
+	}
+
+	/**
+	 * Distance using taxis, buses and undergrounds.
+	 *
+	 * @param source
+	 * @param target
+	 * @return the distance or UNREACHABLE
+	 */
+	public final int general(int source, int target) {
+		return general.get(source * size + target);
+	}
+
+	/**
+	 * Distance using taxis only.
+	 *
+	 * @param source
+	 * @param target
+	 * @return the distance or UNREACHABLE
+	 */
+	public final int taxi(int source, int target) {
+		return taxi.get(source * size + target);
+	}
+
+	/**
+	 * Distance using taxis and buses only.
+	 *
+	 * @param source
+	 * @param target
+	 * @return the distance or UNREACHABLE
+	 */
+	public final int taxiBus(int source, int target) {
+		return taxiBus.get(source * size + target);
+	}
+
+	/**
+	 * @param location
+	 * @return the distance from location to the nearest corner of the board,
+	 *         or UNREACHABLE
+	 */
+	public final int cornerDistance(int location) {
+		return cornerDistance[location];
+	}
+
+	/**
+	 * @param location
+	 * @return true if a boat route leaves location
+	 */
+	public final boolean hasBoat(int location) {
+		return boat[location];
+	}
+
+	/**
+	 * Converts a value of the table to the double representation used by the
+	 * score functions, where unreachable locations are infinitely far.
+	 *
+	 * @param dist
+	 * @return dist as a double
+	 */
+	public static double toDouble(int dist) {
+		return dist == UNREACHABLE ? Double.POSITIVE_INFINITY : dist;
+	}
+
+}
@@ -1,108 +1,322 @@
 package player.aiHelper;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
 
 import scotlandyard.Colour;
-import scotlandyard.Move;
 
+/**
+ * Expectiminimax with alpha-beta pruning at the detective and MrX nodes and
+ * Star1/Star2 pruning at the chance nodes. Every score lies between
+ * DetectiveAIGameState.MIN_SCORE and MAX_SCORE, so the successors of a chance
+ * node that have not been searched yet bound its value and the node is cut as
+ * soon as its value cannot end up inside the window.
+ *
+ * Below the root the tree is searched in place: packed moves are applied to
+ * and undone on the root's successors, and a chance node tries MrX's
+ * locations by moving him on the same node.
+ *
+ * The pruning can be turned off, which gives plain expectiminimax over the
+ * same tree; ExpectiminimaxCheck compares the two.
+ */
 public class Expectiminimax extends Minimax {
 
+	/**
+	 * Most chance successors of a node: only MrX's most likely locations are
+	 * searched, weighted by their probability.
+	 */
+	static final int MAX_CHANCE_NODES = 8;
+
+	private static final double MIN_SCORE = DetectiveAIGameState.MIN_SCORE;
+	private static final double MAX_SCORE = DetectiveAIGameState.MAX_SCORE;
+
+	/**
+	 * Root moves are searched with alpha this much below the best value so
+	 * far, so moves as good as the best one get exact values and
+	 * chooseSafestMove can break the tie between them.
+	 */
+	private static final double ROOT_MARGIN = 1e-6;
+
+	private final SearchContext context;
+	private final boolean pruning;
+	// Scratch space of the chance node at each depth
+	private ChanceBuffers[] buffers;
+
 	/**
 	 * Expectiminimax algorithm - AI for detectives
 	 * @param root
 	 * @param maxColour
 	 */
 	public Expectiminimax(AINode root, Colour maxColour) {
+		this(root, maxColour, true);
+	}
+
+	/**
+	 * @param root
+	 * @param maxColour
+	 * @param pruning
+	 *            false to search the whole tree, without alpha-beta or
+	 *            Star1/Star2
+	 */
+	Expectiminimax(AINode root, Colour maxColour, boolean pruning) {
 		super(root, maxColour);
+		this.pruning = pruning;
+		context = new SearchContext("Expectiminimax");
+		buffers = new ChanceBuffers[0];
 	}
-	
-	private List<AINode> successors(AINode root, boolean chance) {
-		if(chance)
-			return chanceNodes((DetectiveAIGameState) root);
-		Set<Move> options = root.getSuccessorOptions();
-		if (((DetectiveAIGameState) root).getCurrentPlayer() == Colour.Black)
-			return successors(root, MoveFilterer.mrXFilter(options, (AbstractGameState)root));
-		else
-			return successors(root, options);
+
+	/**
+	 * Generates the moves of a node inside the tree. Only MrX's moves are
+	 * filtered.
+	 * 
+	 * @param state
+	 * @param moves
+	 *            Filled with the moves to search
+	 */
+	private void options(AbstractGameState state, MoveList moves) {
+		if (state.getCurrentPlayer() == Colour.Black) {
+			state.generateMoves(moves);
+			MoveFilterer.mrXFilter(moves, state);
+		} else {
+			state.getSuccessorOptions(moves);
+		}
 	}
-	
-	private List<AINode> chanceNodes(DetectiveAIGameState root){
-		Set<Integer> possibleLocations = root.getMrXPossibleLocations();
-		List<AINode> successors = new ArrayList<AINode>();
-		for (int loc : possibleLocations) {
-			AINode newState = root.copy();
-			((AbstractGameState)newState).setMrXLocation(loc);
-			successors.add(newState);
+
+	/**
+	 * @param depth
+	 * @return the scratch space of the chance node at depth
+	 */
+	private ChanceBuffers buffers(int depth) {
+		if (depth >= buffers.length) {
+			buffers = Arrays.copyOf(buffers, depth + 8);
+			for (int i = 0; i < buffers.length; i++) {
+				if (buffers[i] == null)
+					buffers[i] = new ChanceBuffers();
+			}
 		}
-		return successors;
+		return buffers[depth];
 	}
-	
+
 	@Override
-	Move decision(AINode initialState) {
-		double best = maxValue(initialState);
+	int decision(AINode initialState) {
+		double best = rootValue(initialState);
 		if (isStop())
-			return null;
+			return PackedMove.NONE;
+		context.completedDepth = getMaxDepth();
 
 		return MoveFilterer.chooseSafestMove(getSuccessors(), best);
 	}
-	
-	private double maxValue(AINode state) {
-		if (isStop())
-			return 0.0;
-		if (state.isTerminal()) {
-			double score = state.score();
-			state.setScore(score);
-			return score;
-		}
+
+	/**
+	 * @return the nodes searched so far
+	 */
+	long nodes() {
+		return context.nodes;
+	}
+
+	@Override
+	void printStatistics() {
+		System.out.println("Nodes searched by Expectiminimax: " + context.nodes + " (depth " + context.completedDepth + ")");
+	}
+
+	/**
+	 * The root is the only node whose successors are copies, so
+	 * chooseSafestMove can pick between them.
+	 */
+	private double rootValue(AINode root) {
+		context.nodes++;
+		if (isTerminal(root))
+			return root.score();
+		MoveList options = new MoveList();
+		root.getSuccessorOptions(options);
+		double alpha = Double.NEGATIVE_INFINITY;
 		double value = Double.NEGATIVE_INFINITY;
-		List<AINode> successors = successors(state,false);
-		for (AINode s : successors) {
-			double tempValue = chanceValue(s);
+		for (AINode s : successors(root, options)) {
+			double tempValue = chanceValue((AbstractGameState) s, alpha, Double.POSITIVE_INFINITY);
+			if (!isStop())
+				rootSearched(s, tempValue);
 			value = Math.max(value, tempValue);
 			s.setScore(tempValue);
 			storeValue(s, tempValue);
+			alpha = Math.max(alpha, value - ROOT_MARGIN);
 		}
 		return value;
 	}
 
-	private double minValue(AINode state) {
+	private double maxValue(AbstractGameState state, double alpha, double beta) {
 		if (isStop())
 			return 0.0;
-		if (state.isTerminal()) {
-			double score = state.score();
-			state.setScore(score);
-			return score;
+		context.nodes++;
+		if (isTerminal(state))
+			return state.score();
+		double value = Double.NEGATIVE_INFINITY;
+		MoveList moves = context.moves(state.getDepth());
+		options(state, moves);
+		orderMoves(state, moves, PackedMove.NONE);
+		for (int i = 0; i < moves.size(); i++) {
+			state.apply(moves.get(i));
+			double tempValue = chanceValue(state, alpha, beta);
+			state.undo();
+			value = Math.max(value, tempValue);
+			if (pruning && value >= beta)
+				break;
+			alpha = Math.max(alpha, value);
 		}
+		return value;
+	}
+
+	private double minValue(AbstractGameState state, double alpha, double beta) {
+		if (isStop())
+			return 0.0;
+		context.nodes++;
+		if (isTerminal(state))
+			return state.score();
 		double value = Double.POSITIVE_INFINITY;
-		List<AINode> successors = successors(state,false);
-		for (AINode s : successors) {
-			double tempValue = maxValue(s);
+		MoveList moves = context.moves(state.getDepth());
+		options(state, moves);
+		orderMoves(state, moves, PackedMove.NONE);
+		for (int i = 0; i < moves.size(); i++) {
+			state.apply(moves.get(i));
+			double tempValue = maxValue(state, alpha, beta);
+			state.undo();
 			value = Math.min(value, tempValue);
-			s.setScore(tempValue);
-			storeValue(s, tempValue);
+			if (pruning && value <= alpha)
+				break;
+			beta = Math.min(beta, value);
 		}
 		return value;
 	}
 	
-	private double chanceValue(AINode state){
+	/**
+	 * Star2: the value of a MrX node is at most the value of any of his moves,
+	 * so searching only his first move gives an upper bound of the node.
+	 * 
+	 * @return an upper bound of the value of state
+	 */
+	private double probe(AbstractGameState state, double alpha) {
+		if (isTerminal(state))
+			return state.score();
+		MoveList moves = context.moves(state.getDepth());
+		options(state, moves);
+		if (moves.isEmpty())
+			return MAX_SCORE;
+		orderMoves(state, moves, PackedMove.NONE);
+		state.apply(moves.get(0));
+		double value = maxValue(state, Math.min(Math.max(alpha, MIN_SCORE), MAX_SCORE), MAX_SCORE);
+		state.undo();
+		return value;
+	}
+
+	/**
+	 * Chance node: MrX is placed at each of his most likely locations in turn,
+	 * one level deeper, and put back afterwards.
+	 */
+	private double chanceValue(AbstractGameState state, double alpha, double beta) {
 		if (isStop())
 			return 0.0;
-		if (state.isTerminal()) {
-			double score = state.score();
-			state.setScore(score);
-			return score;
+		context.nodes++;
+		if (isTerminal(state))
+			return state.score();
+		int depth = state.getDepth();
+		int location = state.getMrXRealLocation();
+		state.setDepth(depth + 1);
+		double value;
+		if (pruning)
+			value = chanceSearch(state, buffers(depth), alpha, beta);
+		else
+			value = chanceAverage(state, buffers(depth));
+		state.setMrXLocation(location);
+		state.setDepth(depth);
+		return value;
+	}
+
+	/**
+	 * Fills the buffer with MrX's most likely locations and their weights
+	 * 
+	 * @return the number of locations
+	 */
+	private int weights(AbstractGameState state, ChanceBuffers buffer) {
+		MrXBelief belief = ((DetectiveAIGameState) state).getMrXBelief();
+		int count = belief.mostLikely(buffer.locations);
+		double total = 0;
+		for (int i = 0; i < count; i++) {
+			buffer.weights[i] = belief.probability(buffer.locations[i]);
+			total = total + buffer.weights[i];
 		}
+		// The probabilities of the searched locations may not add up to 1
+		for (int i = 0; i < count; i++)
+			buffer.weights[i] = total > 0 ? buffer.weights[i] / total : 1.0 / count;
+		return count;
+	}
+
+	/**
+	 * Star1/Star2 chance node. The successors are first probed for upper
+	 * bounds; the node fails low if even those cannot reach alpha. Then each
+	 * successor is searched with the window that keeps the weighted sum inside
+	 * (alpha, beta), given the bounds of the ones not searched yet.
+	 */
+	private double chanceSearch(AbstractGameState state, ChanceBuffers buffer, double alpha, double beta) {
+		int[] locations = buffer.locations;
+		double[] weights = buffer.weights;
+		double[] upper = buffer.upper;
+		int count = weights(state, buffer);
+
+		// Probing phase
+		double upperSum = 0;
+		double remaining = 1.0;
+		for (int i = 0; i < count; i++) {
+			remaining = remaining - weights[i];
+			double childAlpha = (alpha - upperSum - remaining * MAX_SCORE) / weights[i];
+			state.setMrXLocation(locations[i]);
+			upper[i] = probe(state, childAlpha);
+			upperSum = upperSum + weights[i] * upper[i];
+			if (upperSum + remaining * MAX_SCORE <= alpha)
+				return upperSum + remaining * MAX_SCORE;
+		}
+
+		// Search phase
 		double value = 0;
-		List<AINode> successors = successors(state,true);
-		for (AINode s : successors) {
-			double tempValue = minValue(s);
-			value = value + 1.0/successors.size() * tempValue;
-			s.setScore(tempValue);
-			storeValue(s, tempValue);
+		remaining = 1.0;
+		for (int i = 0; i < count; i++) {
+			upperSum = upperSum - weights[i] * upper[i];
+			remaining = remaining - weights[i];
+			double childAlpha = (alpha - value - upperSum) / weights[i];
+			if (upper[i] <= childAlpha)
+				return value + weights[i] * upper[i] + upperSum;
+			double childBeta = (beta - value - remaining * MIN_SCORE) / weights[i];
+			state.setMrXLocation(locations[i]);
+			double tempValue = minValue(state, Math.max(childAlpha, MIN_SCORE), Math.min(childBeta, MAX_SCORE));
+			value = value + weights[i] * tempValue;
+			if (tempValue <= childAlpha)
+				return value + upperSum;
+			if (tempValue >= childBeta)
+				return value + remaining * MIN_SCORE;
+		}
+		return value;
+	}
+
+	/**
+	 * Plain chance node: the weighted average of the values of MrX's most
+	 * likely locations, each searched with an infinite window.
+	 */
+	private double chanceAverage(AbstractGameState state, ChanceBuffers buffer) {
+		int count = weights(state, buffer);
+		double value = 0;
+		for (int i = 0; i < count; i++) {
+			state.setMrXLocation(buffer.locations[i]);
+			value = value + buffer.weights[i]
+					* minValue(state, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
 		}
 		return value;
 	}
 
+	/**
+	 * MrX's locations searched by a chance node, their weights and the upper
+	 * bounds found while probing them
+	 */
+	private static class ChanceBuffers {
+		final int[] locations = new int[MAX_CHANCE_NODES];
+		final double[] weights = new double[MAX_CHANCE_NODES];
+		final double[] upper = new double[MAX_CHANCE_NODES];
+	}
+
 }
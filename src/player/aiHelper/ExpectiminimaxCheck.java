@@ -0,0 +1,97 @@
+package player.aiHelper;
+
+import java.io.IOException;
+import java.util.List;
+
+import scotlandyard.Colour;
+import scotlandyard.Graph;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Regression check of the pruning of Expectiminimax: on random positions with
+ * a detective to move, the search with alpha-beta and Star1/Star2 must find
+ * the same move and root value as plain expectiminimax at each fixed depth.
+ * Prints the nodes and time of both. MrX may be at his real location or any
+ * of its neighbours, with the same probability. Run by the benchmark target
+ * of build.xml: ant benchmark -Dbenchmark=ExpectiminimaxCheck
+ * -Dbenchmark.args="resources/graph.txt positions maxDepth"
+ *
+ */
+public class ExpectiminimaxCheck {
+
+	private static final int MIN_DEPTH = 2;
+
+	private ExpectiminimaxCheck() {
+	}
+
+	/**
+	 * @param args
+	 *            The graph file, optionally the number of positions (default
+	 *            8) and the deepest depth searched (default 6)
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		Graph<Integer, Route> graph = new ScotlandYardGraphReader().readGraph(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		List<BenchmarkPositions.Position> positions = BenchmarkPositions.positions(graph, count, 1, Colour.Blue);
+		CompactGraph compactGraph = DistanceTable.forGraph(graph).getCompactGraph();
+
+		int different = 0;
+		for (int depth = MIN_DEPTH; depth <= maxDepth; depth++) {
+			long plainNodes = 0;
+			long prunedNodes = 0;
+			long plainTime = 0;
+			long prunedTime = 0;
+			for (BenchmarkPositions.Position p : positions) {
+				LocationSet locations = new LocationSet(compactGraph.size());
+				locations.add(p.mrXLocation);
+				for (int e = compactGraph.edgesStart(p.mrXLocation); e < compactGraph.edgesEnd(p.mrXLocation); e++)
+					locations.add(compactGraph.target(e));
+				for (Colour colour : p.view.getPlayers()) {
+					if (colour != Colour.Black)
+						locations.remove(p.view.getPlayerLocation(colour));
+				}
+				MrXBelief belief = new MrXBelief(compactGraph, locations);
+
+				Expectiminimax plain = new Expectiminimax(DetectiveAIGameState.createGameState(Colour.Blue,
+						locations, belief, null, p.view, p.mrXLocation, graph), Colour.Blue, false);
+				long start = System.nanoTime();
+				int plainMove = plain.searchToDepth(depth);
+				plainTime = plainTime + System.nanoTime() - start;
+				plainNodes = plainNodes + plain.nodes();
+
+				Expectiminimax pruned = new Expectiminimax(DetectiveAIGameState.createGameState(Colour.Blue,
+						locations, belief, null, p.view, p.mrXLocation, graph), Colour.Blue, true);
+				start = System.nanoTime();
+				int prunedMove = pruned.searchToDepth(depth);
+				prunedTime = prunedTime + System.nanoTime() - start;
+				prunedNodes = prunedNodes + pruned.nodes();
+
+				double plainValue = rootValue(plain);
+				double prunedValue = rootValue(pruned);
+				if (plainMove != prunedMove || plainValue != prunedValue) {
+					different++;
+					System.out.println("Depth " + depth + ": plain " + PackedMove.toString(plainMove) + " " + plainValue
+							+ ", pruned " + PackedMove.toString(prunedMove) + " " + prunedValue);
+				}
+			}
+			System.out.println("Depth " + depth + ": plain " + plainNodes + " nodes in " + plainTime / 1000000
+					+ "ms, pruned " + prunedNodes + " nodes in " + prunedTime / 1000000 + "ms");
+		}
+		System.out.println(different + " searches with a different move or value");
+	}
+
+	/**
+	 * @return the value of the best successor of the root
+	 */
+	private static double rootValue(Minimax search) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (AINode s : search.getSuccessors())
+			best = Math.max(best, s.getScore());
+		return best;
+	}
+
+}
@@ -0,0 +1,60 @@
+package player.aiHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import scotlandyard.Graph;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Process-wide registry of the boards read so far, keyed by filename. Each
+ * file is parsed once and its DistanceTable (with the CompactGraph and the
+ * MrXTracker) built with it, so every player of the JVM gets the same
+ * instances. If an up to date precompiled board (see BoardFile) sits next to
+ * the file, it is mapped instead. The graphs handed out are shared and must
+ * not be modified.
+ *
+ */
+public class GraphRegistry {
+
+	private static final Map<String, Graph<Integer, Route>> graphs = new HashMap<String, Graph<Integer, Route>>();
+
+	private GraphRegistry() {
+	}
+
+	/**
+	 * Returns the graph read from the given file, reading it and building its
+	 * distance tables (or mapping its precompiled board) the first time the
+	 * file is asked for.
+	 *
+	 * @param filename
+	 * @return the shared graph of the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static synchronized Graph<Integer, Route> forFile(String filename) throws IOException {
+		String key = new File(filename).getCanonicalPath();
+		Graph<Integer, Route> graph = graphs.get(key);
+		if (graph == null) {
+			File board = new File(BoardFile.boardFilename(filename));
+			if (board.lastModified() >= new File(filename).lastModified()) {
+				try {
+					graph = BoardFile.load(board.getPath());
+				} catch (IOException e) {
+					System.err.println(e.getMessage());
+				}
+			}
+			if (graph == null) {
+				graph = new ScotlandYardGraphReader().readGraph(filename);
+				DistanceTable.forGraph(graph);
+			}
+			graphs.put(key, graph);
+		}
+		return graph;
+	}
+
+}
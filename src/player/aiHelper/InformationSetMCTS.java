@@ -0,0 +1,106 @@
+package player.aiHelper;
+
+import java.util.Random;
+
+import scotlandyard.Colour;
+
+/**
+ * Information set Monte Carlo tree search for a detective. The detectives do
+ * not know where MrX is, so each iteration first draws one of his possible
+ * locations from the belief of the root (a determinisation) and then walks
+ * the one tree shared by all the determinisations, so the statistics of a
+ * move are its average over the locations MrX may be at.
+ *
+ * The tree only holds the moves of the detectives up to MrX's next turn: they
+ * do not depend on where MrX is, while his moves do. From there, and in the
+ * rollouts, all the players move in turn under the determinisation. A rollout
+ * cut before the end of the game is scored from how close the nearest
+ * detective got to MrX.
+ *
+ * Like MonteCarloTreeSearch it is anytime and searched by all the available
+ * cores at once. The tree is not kept between moves, since the possible
+ * locations change with each of MrX's moves.
+ */
+public class InformationSetMCTS extends MonteCarloTreeSearch {
+
+	/**
+	 * Most rounds in a rollout
+	 */
+	private static final int ROLLOUT_ROUNDS = 2;
+
+	private final DetectiveAIGameState root;
+	private final int rolloutPlies;
+
+	/**
+	 * Uses one thread for each available core.
+	 *
+	 * @param root
+	 *            A DetectiveAIGameState, its MrX location is not used
+	 * @param maxColour
+	 *            The detective to move
+	 */
+	public InformationSetMCTS(AINode root, Colour maxColour) {
+		super(root, maxColour);
+		this.root = (DetectiveAIGameState) root;
+		this.rolloutPlies = ROLLOUT_ROUNDS * this.root.state.getPlayerCount();
+	}
+
+	/**
+	 * DetectiveAIGameState only alternates between MrX and its detective, so
+	 * the threads play on a MyAIGameState of the same position, where all the
+	 * players move in turn.
+	 */
+	@Override
+	AbstractGameState copyRoot() {
+		return MyAIGameState.copyOf(root);
+	}
+
+	/**
+	 * Puts MrX at one of his possible locations, drawn from the belief
+	 */
+	@Override
+	void determinise(AbstractGameState state, Random random) {
+		int location = root.getMrXBelief().sample(random);
+		if (location < 0)
+			location = root.getMrXPossibleLocations().get(0);
+		state.setMrXLocation(location);
+	}
+
+	/**
+	 * All the moves of the detectives, unfiltered since MoveFilterer keeps the
+	 * detectives' moves by their distance to MrX, which is only known under a
+	 * determinisation. MrX's nodes get no children.
+	 */
+	@Override
+	void treeMoves(AbstractGameState state, MoveList moves) {
+		moves.clear();
+		if (state.getCurrentPlayer() != Colour.Black)
+			state.generateMoves(moves);
+	}
+
+	/**
+	 * @return 1 - 1 / (1 + d) where d is the distance from the nearest
+	 *         detective to MrX
+	 */
+	@Override
+	double heuristicReward(AbstractGameState state) {
+		SearchState s = state.state;
+		DistanceTable distances = state.help.getDistanceTable();
+		int mrX = s.getLocation(SearchState.MRX);
+		int nearest = DistanceTable.UNREACHABLE;
+		for (int p = 1; p < s.getPlayerCount(); p++)
+			nearest = Math.min(nearest, distances.general(s.getLocation(p), mrX));
+		return 1.0 - 1.0 / (1.0 + nearest);
+	}
+
+	@Override
+	int rolloutPlies() {
+		return rolloutPlies;
+	}
+
+	@Override
+	boolean keepsTree() {
+		return false;
+	}
+
+}
@@ -0,0 +1,106 @@
+package player.aiHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import scotlandyard.Colour;
+
+/**
+ * Lazy SMP version of AlphaBeta. Besides the search thread, a number of helper
+ * threads run their own iterative deepening over copies of the root. Odd
+ * helpers search one ply deeper than the search thread and every helper
+ * starts from a different root move, so they fill the shared lock-free
+ * transposition table with entries the search thread can use. The threads
+ * only communicate through the table; the move played is always the one found
+ * by the search thread. The helpers never touch the root itself: their copies
+ * of it are made on the search thread before they start.
+ */
+public class LazySMPAlphaBeta extends AlphaBeta {
+
+	private final int helpers;
+	private final List<Thread> helperThreads;
+	private long startTime;
+
+	/**
+	 * Uses one helper for each available core other than the search thread's.
+	 *
+	 * @param root
+	 * @param maxColour
+	 */
+	public LazySMPAlphaBeta(AINode root, Colour maxColour) {
+		this(root, maxColour, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param root
+	 * @param maxColour
+	 * @param threads
+	 *            Total number of threads, including the search thread
+	 */
+	public LazySMPAlphaBeta(AINode root, Colour maxColour, int threads) {
+		super(root, maxColour);
+		this.helpers = Math.max(0, threads - 1);
+		this.helperThreads = new ArrayList<Thread>();
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Starts the helpers on the first iteration, then runs the normal search.
+	 */
+	@Override
+	int decision(AINode initialState) {
+		if (helperThreads.isEmpty() && helpers > 0) {
+			MoveList moves = options(initialState);
+			for (int i = 1; i <= helpers; i++) {
+				final int id = i;
+				final List<AINode> successors = expand(initialState, moves);
+				Thread helper = new Thread(() -> help(successors, id));
+				helper.setName("LazySMP-" + id);
+				helper.setDaemon(true);
+				helperThreads.add(helper);
+				helper.start();
+			}
+		}
+		return super.decision(initialState);
+	}
+
+	/**
+	 * Iterative deepening loop of a helper thread. Results are only written to
+	 * the transposition table.
+	 *
+	 * @param successors
+	 *            The helper's own copies of the successors of the root
+	 * @param id
+	 *            Helper number, from 1
+	 */
+	private void help(List<AINode> successors, int id) {
+		SearchContext context = context();
+		if (successors.isEmpty())
+			return;
+		Collections.rotate(successors, -(id % successors.size()));
+		int depth = getMaxDepth() + id % 2;
+		while (!isStop()) {
+			context.maxDepth = depth;
+			double alpha = Double.NEGATIVE_INFINITY;
+			for (AINode s : successors) {
+				alpha = Math.max(alpha, value(s, alpha, Double.POSITIVE_INFINITY, context));
+			}
+			if (isStop())
+				break;
+			context.completedDepth = depth;
+			// Never fall behind the search thread
+			depth = Math.max(depth + 1, getMaxDepth() + id % 2);
+		}
+	}
+
+	@Override
+	void printStatistics() {
+		super.printStatistics();
+		double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+		int completed = completedDepth();
+		System.out.println("Lazy SMP with " + (helpers + 1) + " threads: depth " + completed + " in " + seconds
+				+ "s (" + completed / seconds + " plies per second)");
+	}
+
+}
@@ -0,0 +1,64 @@
+package player.aiHelper;
+
+import java.io.IOException;
+import java.util.List;
+
+import scotlandyard.Colour;
+import scotlandyard.Graph;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Measures how LazySMPAlphaBeta scales with its number of threads: MrX is
+ * searched on the same positions with 1, 2, 4 and 8 threads and the same time
+ * budget, and the depth completed and nodes searched are averaged. Nodes
+ * cut by the shared transposition table are cheap, so the depth is the
+ * measure to compare. More threads than cores only share the cores. Run by
+ * the benchmark target of build.xml: ant benchmark -Dbenchmark=LazySMPBenchmark
+ * -Dbenchmark.args="resources/graph.txt positions budget"
+ *
+ */
+public class LazySMPBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	private LazySMPBenchmark() {
+	}
+
+	/**
+	 * @param args
+	 *            The graph file, optionally the number of positions (default
+	 *            10) and the budget of each search in milliseconds (default
+	 *            4000, half of it is used as with TimeManager)
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		Graph<Integer, Route> graph = new ScotlandYardGraphReader().readGraph(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long budget = args.length > 2 ? Long.parseLong(args[2]) : 4000;
+		List<BenchmarkPositions.Position> positions = BenchmarkPositions.positions(graph, count, 1, Colour.Black);
+
+		StringBuilder results = new StringBuilder();
+		for (int threads : THREADS) {
+			long depths = 0;
+			long nodes = 0;
+			long time = 0;
+			for (BenchmarkPositions.Position p : positions) {
+				AINode root = MyAIGameState.createGameState(null, p.view, p.mrXLocation, graph);
+				LazySMPAlphaBeta search = new LazySMPAlphaBeta(root, Colour.Black, threads);
+				long start = System.currentTimeMillis();
+				Minimax.execute(search, budget);
+				time = time + System.currentTimeMillis() - start;
+				depths = depths + search.completedDepth();
+				nodes = nodes + search.nodes();
+			}
+			results.append(String.format("%d threads: depth %.2f, %d nodes per second%n", threads,
+					(double) depths / count, nodes * 1000 / Math.max(1, time)));
+		}
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cores, " + count + " positions, budget "
+				+ budget + "ms");
+		System.out.print(results);
+	}
+
+}
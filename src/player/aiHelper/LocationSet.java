@@ -0,0 +1,167 @@
+package player.aiHelper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of board locations stored as a bitset, one bit per location. With 199
+ * locations the whole set fits in four longs, so copying, union and
+ * difference are a handful of word operations.
+ */
+public final class LocationSet {
+
+	private final long[] words;
+
+	/**
+	 * Creates an empty set.
+	 *
+	 * @param size
+	 *            One more than the largest location, see CompactGraph.size()
+	 */
+	public LocationSet(int size) {
+		words = new long[(size + 63) >>> 6];
+	}
+
+	/**
+	 * Creates a copy of other.
+	 *
+	 * @param other
+	 */
+	public LocationSet(LocationSet other) {
+		words = other.words.clone();
+	}
+
+	/**
+	 * @return the number of words of the set
+	 */
+	int wordCount() {
+		return words.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the given word of the set
+	 */
+	long word(int index) {
+		return words[index];
+	}
+
+	/**
+	 * ORs bits into the given word
+	 *
+	 * @param index
+	 * @param bits
+	 */
+	void or(int index, long bits) {
+		words[index] |= bits;
+	}
+
+	public void add(int location) {
+		words[location >>> 6] |= 1L << location;
+	}
+
+	public void remove(int location) {
+		words[location >>> 6] &= ~(1L << location);
+	}
+
+	public boolean contains(int location) {
+		return (words[location >>> 6] & 1L << location) != 0;
+	}
+
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Makes this set equal to other
+	 *
+	 * @param other
+	 *            A set of the same size
+	 */
+	public void set(LocationSet other) {
+		System.arraycopy(other.words, 0, words, 0, words.length);
+	}
+
+	/**
+	 * @return the number of locations in the set
+	 */
+	public int size() {
+		int size = 0;
+		for (long word : words)
+			size += Long.bitCount(word);
+		return size;
+	}
+
+	public boolean isEmpty() {
+		for (long word : words)
+			if (word != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Iterates over the set: for (int l = set.next(0); l >= 0; l =
+	 * set.next(l + 1))
+	 *
+	 * @param from
+	 * @return the smallest location in the set that is at least from, or -1
+	 */
+	public int next(int from) {
+		int index = from >>> 6;
+		if (index >= words.length)
+			return -1;
+		long word = words[index] & (-1L << from);
+		while (true) {
+			if (word != 0)
+				return (index << 6) + Long.numberOfTrailingZeros(word);
+			if (++index == words.length)
+				return -1;
+			word = words[index];
+		}
+	}
+
+	/**
+	 * @param n
+	 *            From 0 to size() - 1
+	 * @return the n-th smallest location of the set
+	 */
+	public int get(int n) {
+		int remaining = n;
+		for (int l = next(0); l >= 0; l = next(l + 1)) {
+			if (remaining-- == 0)
+				return l;
+		}
+		throw new IndexOutOfBoundsException("No location " + n + " in set of size " + size());
+	}
+
+	/**
+	 * @return the locations in a new HashSet
+	 */
+	public Set<Integer> toSet() {
+		Set<Integer> set = new HashSet<Integer>();
+		for (int l = next(0); l >= 0; l = next(l + 1))
+			set.add(l);
+		return set;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof LocationSet))
+			return false;
+		return Arrays.equals(words, ((LocationSet) obj).words);
+	}
+
+	@Override
+	public String toString() {
+		return toSet().toString();
+	}
+
+}
@@ -1,12 +1,11 @@
 package player.aiHelper;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import scotlandyard.Colour;
 import scotlandyard.Move;
@@ -16,19 +15,25 @@ import scotlandyard.Move;
  */
 public class Minimax {
 
-	protected static int MAX_DEPTH;
+	// Written by the search thread only, read by helper threads
+	private volatile int maxDepth;
 
 	private List<AINode> successors;
 
 	private Map<AINode, Double> lastCalculatedScores;
 	private AINode root;
-	private Move decision;
+	private int decision;
 	private Colour maxColour;
-	private boolean stop;
+	private volatile boolean stop;
+	private final CountDownLatch done;
+	private TimeManager timer;
+	// Best root move fully searched in the current iteration
+	private int partialDecision;
+	private double partialValue;
 
 	/**
-	 * Takes the initial root of the tree and the Colour of MAX. MAX_DEPTH is
-	 * initially set to 2.
+	 * Takes the initial root of the tree and the Colour of MAX. The max depth
+	 * is initially set to 2.
 	 * 
 	 * @param root
 	 * @param maxColour
@@ -38,8 +43,11 @@ public class Minimax {
 		this.maxColour = maxColour;
 		lastCalculatedScores = new HashMap<AINode, Double>();
 		stop = false;
+		done = new CountDownLatch(1);
+		timer = new TimeManager(TimeManager.JUDGE_MOVE_TIME);
 		successors = null;
-		MAX_DEPTH = 2;
+		decision = PackedMove.NONE;
+		maxDepth = 2;
 	}
 
 	/**
@@ -49,7 +57,8 @@ public class Minimax {
 	 * @return The successors of the given node of the tree
 	 */
 	private List<AINode> successors(AINode root) {
-		Set<Move> options = root.getSuccessorOptions();
+		MoveList options = new MoveList();
+		root.getSuccessorOptions(options);
 		return successors(root, options);
 	}
 
@@ -65,48 +74,136 @@ public class Minimax {
 	 *            Possible moves
 	 * @return A set of possible gamestates
 	 */
-	final List<AINode> successors(AINode initial, Set<Move> options) {
-		List<AINode> successors = new ArrayList<AINode>();
-		for (Move option : options) {
-			AINode newState = initial.copy(option);
-			newState.simulateMove();
-			successors.add(newState);
-		}
+	final List<AINode> successors(AINode initial, MoveList options) {
+		List<AINode> successors = expand(initial, options);
 		if (this.successors == null) {
 			this.successors = successors;
 		}
 		/*
 		 * Sort successors based on a previous calculated score, if there is
 		 * one. Otherwise, calculate score and sort. Sort in descending order
-		 * it's MAX's turn, ascending if otherwise.
+		 * it's MAX's turn, ascending if otherwise. The score of each successor
+		 * is looked up once, the indices are sorted by it.
 		 */
-		if (((AbstractGameState) initial).getCurrentPlayer() == maxColour)
-			Collections.sort(successors, Collections.reverseOrder(new stateComparator()));
-		else
-			Collections.sort(successors, new stateComparator());
+		boolean descending = ((AbstractGameState) initial).getCurrentPlayer() == maxColour;
+		MoveList order = new MoveList();
+		for (int i = 0; i < successors.size(); i++) {
+			double score = orderingScore(successors.get(i));
+			order.add(i);
+			order.setScore(i, descending ? -score : score);
+		}
+		order.sort();
+		List<AINode> unsorted = new ArrayList<AINode>(successors);
+		for (int i = 0; i < order.size(); i++)
+			successors.set(i, unsorted.get(order.get(i)));
 
 		return successors;
 	}
 
 	/**
-	 * Increase MAX_DEPTH
+	 * @return the value of the node in the last iteration if there is one, its
+	 *         score otherwise
+	 */
+	private double orderingScore(AINode state) {
+		Double last = lastCalculatedScores.get(state);
+		if (last != null)
+			return last;
+		return state.getScore();
+	}
+
+	/**
+	 * Simulates each of the moves on a copy of the given node. Unlike
+	 * successors(), neither sorts nor records the result, so it can be used by
+	 * helper threads.
+	 * 
+	 * @param initial
+	 *            Inital gamestate
+	 * @param options
+	 *            Possible moves
+	 * @return A list of possible gamestates
+	 */
+	final List<AINode> expand(AINode initial, MoveList options) {
+		List<AINode> successors = new ArrayList<AINode>(options.size());
+		for (int i = 0; i < options.size(); i++) {
+			AINode newState = initial.copy(options.get(i));
+			newState.simulateMove();
+			successors.add(newState);
+		}
+		return successors;
+	}
+
+	/**
+	 * Orders the moves of a node without creating successor nodes: each move
+	 * is applied to the node in place, scored and taken back. Sorts in
+	 * descending order if it's MAX's turn, ascending if otherwise.
+	 * 
+	 * @param state
+	 *            The node, left unchanged on return
+	 * @param moves
+	 *            Packed moves of the current player, sorted in place
+	 * @param first
+	 *            Move to search first regardless of its score, may be
+	 *            PackedMove.NONE
+	 */
+	final void orderMoves(AbstractGameState state, MoveList moves, int first) {
+		boolean descending = state.getCurrentPlayer() == maxColour;
+		for (int i = 0; i < moves.size(); i++) {
+			state.apply(moves.get(i));
+			moves.setScore(i, descending ? -state.score() : state.score());
+			state.undo();
+		}
+		moves.sort();
+		if (first != PackedMove.NONE)
+			moves.moveToFront(first);
+	}
+
+	/**
+	 * Increase max depth
 	 */
 	final private void increaseDepth() {
-		MAX_DEPTH++;
+		maxDepth++;
+	}
+
+	/**
+	 * Searches the root once to the given depth, with no time limit and no
+	 * earlier iteration. Used by the benchmarks to compare searches at a
+	 * fixed depth.
+	 * 
+	 * @param depth
+	 * @return the move found, a PackedMove
+	 */
+	final int searchToDepth(int depth) {
+		maxDepth = depth;
+		successors = null;
+		return decision(root);
+	}
+
+	/**
+	 * @return depth of the current iteration
+	 */
+	final int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return true if the node is not expanded in the current iteration
+	 */
+	final boolean isTerminal(AINode state) {
+		return state.isTerminal(maxDepth);
 	}
 
 	/**
-	 * Run the algorithm once, creating a tree for the current MAX_DEPTH
+	 * Run the algorithm once, creating a tree for the current max depth
 	 * 
 	 * @param initialState
 	 *            The initial state
-	 * @return A best move
+	 * @return A best move, PackedMove.NONE if the search was stopped
 	 */
-	Move decision(AINode initialState) {
+	int decision(AINode initialState) {
 		double best = maxValue(initialState);
 
 		if (stop)
-			return null;
+			return PackedMove.NONE;
 
 		// From the set all moves, filter the ones that have scored the best
 		// score.
@@ -118,7 +215,7 @@ public class Minimax {
 	private double maxValue(AINode state) {
 		if (stop)
 			return 0.0;
-		if (state.isTerminal()) {
+		if (isTerminal(state)) {
 			double score = state.score();
 			state.setScore(score); // Store score
 			return score;
@@ -126,7 +223,10 @@ public class Minimax {
 		double value = Double.NEGATIVE_INFINITY;
 		List<AINode> successors = successors(state);
 		for (AINode s : successors) {
-			value = Math.max(value, minValue(s));
+			double tempValue = minValue(s);
+			if (isRoot(state) && !stop)
+				rootSearched(s, tempValue);
+			value = Math.max(value, tempValue);
 			s.setScore(value); // Store score in state
 			lastCalculatedScores.put(s, value); // Store value to hashmap, used
 												// for move sorting.
@@ -137,7 +237,7 @@ public class Minimax {
 	private double minValue(AINode state) {
 		if (stop)
 			return 0.0;
-		if (state.isTerminal()) {
+		if (isTerminal(state)) {
 			double score = state.score();
 			state.setScore(score);
 			return score;
@@ -184,6 +284,47 @@ public class Minimax {
 		lastCalculatedScores.put(s, value);
 	}
 
+	/**
+	 * @return true if the node is the root of the search
+	 */
+	final boolean isRoot(AINode state) {
+		return state == root;
+	}
+
+	/**
+	 * Records a successor of the root whose search in the current iteration
+	 * has finished. Must be called in the order the successors are searched,
+	 * starting with the first one: since the successors are searched best
+	 * first, the best of them is at least as good as the move of the last
+	 * completed iteration and is played if the iteration is interrupted.
+	 * Successors whose search was cut short by the stop signal must not be
+	 * recorded.
+	 * 
+	 * @param s
+	 *            Successor of the root
+	 * @param value
+	 *            Its value at the current depth
+	 */
+	final void rootSearched(AINode s, double value) {
+		if (partialDecision == PackedMove.NONE || value > partialValue) {
+			partialDecision = s.getUsedMove();
+			partialValue = value;
+		}
+	}
+
+	/**
+	 * Prints statistics about the search once it has stopped
+	 */
+	void printStatistics() {
+	}
+
+	/**
+	 * Called on the search thread once the search has stopped, to release
+	 * any resources held by the algorithm
+	 */
+	void finish() {
+	}
+
 	/**
 	 * When the time limit has been reached, call that method to quickly stop
 	 * execution of the algorithm
@@ -192,17 +333,56 @@ public class Minimax {
 		stop = true;
 	}
 
+	/**
+	 * Body of the search thread: searches, then signals that the decision is
+	 * ready.
+	 */
+	private final void run() {
+		search();
+		finish();
+		done.countDown();
+	}
+
+	/**
+	 * Records the move to play, for searches that do not go through
+	 * decision()
+	 * 
+	 * @param move
+	 *            A PackedMove
+	 */
+	final void setDecision(int move) {
+		this.decision = move;
+	}
+
 	/**
 	 * Iteratively executes minimax algorithm each time increasing the depth
 	 * Calculations from previous iterations are used to further prune the game
-	 * tree
+	 * tree. Stops early if there is only one move to choose from, if the tree
+	 * already reaches the end of the game or if the next iteration is not
+	 * expected to finish in time. Runs on the search thread until it returns
+	 * or the stop signal is sent.
 	 */
-	private final void run() {
+	void search() {
+		int pliesLeft = Integer.MAX_VALUE;
+		if (root instanceof AbstractGameState)
+			pliesLeft = ((AbstractGameState) root).getPliesLeft();
 		while (!stop) {
-			Move temp = decision(root);
-			if (temp != null) {
+			timer.iterationStarted();
+			partialDecision = PackedMove.NONE;
+			int temp = decision(root);
+			if (temp == PackedMove.NONE && stop && partialDecision != PackedMove.NONE) {
+				// Keep the work done in the interrupted iteration
+				System.out.println("Using partial search at depth " + maxDepth + ": "
+						+ PackedMove.toString(partialDecision));
+				this.decision = partialDecision;
+			}
+			if (temp != PackedMove.NONE) {
+				boolean forced = successors != null && successors.size() == 1;
 				successors = null;
 				this.decision = temp;
+				timer.iterationFinished();
+				if (forced || maxDepth >= pliesLeft || !timer.hasTimeForNextIteration())
+					break;
 				System.out.println("******Increasing depth...******");
 				this.increaseDepth();
 			}
@@ -210,11 +390,8 @@ public class Minimax {
 	}
 
 	/**
-	 * Static method used to start the execution of the algorithm. It starts the
-	 * algorithm on a separate thread while the current thread sleeps for a
-	 * specified time. Once the time limit has been reached, it sends a stop
-	 * signal to the Minimax thread, which causes it to immediately return. The
-	 * method returns the move calculated by the last fully explored game tree.
+	 * Static method used to start the execution of the algorithm. Uses the
+	 * judge's time limit, see executeMinimax(AINode, Colour, AIType, long).
 	 * 
 	 * @param root
 	 *            Initial state of game
@@ -225,11 +402,70 @@ public class Minimax {
 	 * @return the move calculated by the last fully explored game tree
 	 */
 	public final static Move executeMinimax(AINode root, Colour maxColour, AIType type) {
+		return executeMinimax(root, maxColour, type, TimeManager.JUDGE_MOVE_TIME);
+	}
+
+	/**
+	 * Static method used to start the execution of the algorithm. It starts the
+	 * algorithm on a separate thread and waits until either the search decides
+	 * to stop on its own or the deadline set by the TimeManager has been
+	 * reached. In the latter case, it sends a stop signal to the Minimax thread,
+	 * which causes it to immediately return. The method returns the move
+	 * calculated by the last fully explored game tree, or the best fully
+	 * searched root move of the interrupted iteration if there is one.
+	 * 
+	 * @param root
+	 *            Initial state of game
+	 * @param maxColour
+	 *            Colour of MAX
+	 * @param type
+	 *            Type of AI
+	 * @param budget
+	 *            Time in milliseconds allowed for the move
+	 * @return the move calculated by the last fully explored game tree
+	 */
+	public final static Move executeMinimax(AINode root, Colour maxColour, AIType type, long budget) {
+		return executeMinimax(root, maxColour, type, budget, new SearchMemory());
+	}
+
+	/**
+	 * Like executeMinimax(AINode, Colour, AIType, long), for a player that
+	 * keeps what it can from its last search.
+	 * 
+	 * @param root
+	 *            Initial state of game
+	 * @param maxColour
+	 *            Colour of MAX
+	 * @param type
+	 *            Type of AI
+	 * @param budget
+	 *            Time in milliseconds allowed for the move
+	 * @param memory
+	 *            Owned by the player, holds what its last search left
+	 * @return the move calculated by the last fully explored game tree
+	 */
+	public final static Move executeMinimax(AINode root, Colour maxColour, AIType type, long budget,
+			SearchMemory memory) {
 		Minimax calculator;
 		switch (type) {
 		case AlphaBeta:
 			calculator = new AlphaBeta(root, maxColour);
 			break;
+		case ParallelAlphaBeta:
+			calculator = new ParallelAlphaBeta(root, maxColour);
+			break;
+		case LazySMPAlphaBeta:
+			calculator = new LazySMPAlphaBeta(root, maxColour);
+			break;
+		case PVSAlphaBeta:
+			calculator = new PVSAlphaBeta(root, maxColour);
+			break;
+		case MonteCarloTreeSearch:
+			calculator = new MonteCarloTreeSearch(root, maxColour, memory);
+			break;
+		case InformationSetMCTS:
+			calculator = new InformationSetMCTS(root, maxColour);
+			break;
 		case Expectiminimax:
 			calculator = new Expectiminimax(root, maxColour);
 			break;
@@ -237,49 +473,46 @@ public class Minimax {
 			calculator = new Minimax(root, maxColour);
 			break;
 		}
+		return execute(calculator, budget);
+	}
+
+	/**
+	 * Runs a search on its own thread until it stops or its budget is used,
+	 * see executeMinimax(AINode, Colour, AIType, long).
+	 * 
+	 * @param calculator
+	 *            A search that has not run yet
+	 * @param budget
+	 *            Time in milliseconds allowed for the move
+	 * @return the move found, null if there is none
+	 */
+	static Move execute(Minimax calculator, long budget) {
+		TimeManager timer = new TimeManager(budget);
+		calculator.timer = timer;
 		Thread runner = new Thread(calculator::run);
 		runner.setName("Minimax");
 		runner.start();
 		try {
-			Thread.sleep(13000);
+			calculator.done.await(timer.remaining(), TimeUnit.MILLISECONDS);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
 		calculator.stop();
-		System.out.println("Max Depth: " + Minimax.MAX_DEPTH);
-		return calculator.decision;
-	}
-
-	/**
-	 * 
-	 * Comparator to sort moves based on previous calculations to maximise
-	 * pruning
-	 *
-	 */
-	class stateComparator implements Comparator<AINode> {
-
-		@Override
-		public int compare(AINode o1, AINode o2) {
-			double o1Score;
-			double o2Score;
-			if (lastCalculatedScores.containsKey(o1))
-				o1Score = lastCalculatedScores.get(o1);
-			else
-				o1Score = o1.getScore();
-
-			if (lastCalculatedScores.containsKey(o2))
-				o2Score = lastCalculatedScores.get(o2);
-			else
-				o2Score = o2.getScore();
-
-			return Double.compare(o1Score, o2Score);
-
+		try {
+			// The search returns as soon as it sees the stop signal
+			runner.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
-
+		System.out.println("Max Depth: " + calculator.maxDepth + " after " + timer.elapsed() + "ms");
+		calculator.printStatistics();
+		if (calculator.decision == PackedMove.NONE)
+			return null;
+		return PackedMove.decode(calculator.decision);
 	}
 
 	public enum AIType {
-		AlphaBeta, Expectiminimax
+		AlphaBeta, ParallelAlphaBeta, LazySMPAlphaBeta, PVSAlphaBeta, MonteCarloTreeSearch, InformationSetMCTS, Expectiminimax
 	}
 
 }
@@ -0,0 +1,387 @@
+package player.aiHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import scotlandyard.Colour;
+
+/**
+ * Monte Carlo tree search (UCT) for MrX. Each iteration walks down the tree
+ * choosing children by their upper confidence bound, expands the leaf it
+ * reaches and plays a rollout from it, with the moves picked at random among
+ * the ones MoveFilterer keeps. Like AlphaBeta, the detectives are assumed to
+ * know where MrX is. A rollout that ends the game scores 1 if MrX wins and 0
+ * otherwise; one cut at ROLLOUT_PLIES is scored from MyAIGameState.score().
+ *
+ * The tree lives in a NodePool and is searched by all the available cores at
+ * once, using virtual loss to spread the threads over the tree. The tree is
+ * left in the SearchMemory of the player; when MrX is next to move, the part
+ * of it the game went into is kept if it can be found, so the search does
+ * not start from scratch.
+ *
+ * Subclasses can change how positions are sampled, which moves make up the
+ * tree and how rollouts are scored, see InformationSetMCTS.
+ */
+public class MonteCarloTreeSearch extends Minimax {
+
+	/**
+	 * Most nodes in the tree
+	 */
+	private static final int POOL_SIZE = 1 << 20;
+
+	/**
+	 * Exploration constant of UCT, for rewards between 0 and 1
+	 */
+	private static final double EXPLORATION = 0.7;
+
+	/**
+	 * Most moves in a rollout, four rounds
+	 */
+	private static final int ROLLOUT_PLIES = 24;
+
+	/**
+	 * The reward of a rollout cut before the end of the game is a logistic
+	 * function of the score, 0.5 at SCORE_CENTRE
+	 */
+	private static final double SCORE_CENTRE = 40.0;
+	private static final double SCORE_SCALE = 8.0;
+
+	/**
+	 * Deepest the root of the next search is looked for in the last tree: MrX
+	 * and each of the detectives move once in between
+	 */
+	private static final int REUSE_PLIES = 6;
+
+	private final AbstractGameState root;
+	private final SearchMemory memory;
+	private final int threads;
+	private NodePool tree;
+	private final AtomicLong iterations;
+	private int reused;
+	private long startTime;
+
+	/**
+	 * Uses one thread for each available core and keeps no tree from an
+	 * earlier search.
+	 *
+	 * @param root
+	 * @param maxColour
+	 *            Must be Black, the rollouts score positions for MrX
+	 */
+	public MonteCarloTreeSearch(AINode root, Colour maxColour) {
+		this(root, maxColour, new SearchMemory());
+	}
+
+	/**
+	 * Uses one thread for each available core.
+	 *
+	 * @param root
+	 * @param maxColour
+	 *            Must be Black, the rollouts score positions for MrX
+	 * @param memory
+	 *            Holds the tree of the player's last search, replaced by the
+	 *            tree of this one
+	 */
+	public MonteCarloTreeSearch(AINode root, Colour maxColour, SearchMemory memory) {
+		this(root, maxColour, memory, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param root
+	 * @param maxColour
+	 * @param memory
+	 *            Holds the tree of the player's last search, replaced by the
+	 *            tree of this one
+	 * @param threads
+	 *            Number of threads searching the tree, including the search
+	 *            thread
+	 */
+	public MonteCarloTreeSearch(AINode root, Colour maxColour, SearchMemory memory, int threads) {
+		super(root, maxColour);
+		this.root = (AbstractGameState) root;
+		this.memory = memory;
+		this.threads = Math.max(1, threads);
+		this.iterations = new AtomicLong();
+		this.reused = 0;
+	}
+
+	/**
+	 * Runs iterations on all the threads until the stop signal, then picks the
+	 * most visited move of the root.
+	 */
+	@Override
+	void search() {
+		startTime = System.currentTimeMillis();
+		tree = keepsTree() ? reuseTree() : null;
+		if (tree == null)
+			tree = new NodePool(POOL_SIZE);
+		else
+			reused = tree.size();
+
+		// Nothing to search if there is a single move
+		if (!tree.isExpanded(0) && tree.startExpansion(0)) {
+			MoveList moves = new MoveList();
+			treeMoves(copyRoot(), moves);
+			tree.expand(0, moves);
+		}
+		if (tree.childCount(0) == 1) {
+			setDecision(tree.move(tree.firstChild(0)));
+			return;
+		}
+
+		List<Thread> helpers = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			Thread helper = new Thread(this::iterate);
+			helper.setName("MCTS-" + i);
+			helper.setDaemon(true);
+			helpers.add(helper);
+			helper.start();
+		}
+		iterate();
+		for (Thread helper : helpers) {
+			try {
+				helper.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+
+		int best = bestChild();
+		if (best >= 0)
+			setDecision(tree.move(best));
+		if (keepsTree()) {
+			memory.tree = tree;
+			memory.root = root;
+		}
+	}
+
+	/**
+	 * @return a copy of the root for a searching thread to play moves on
+	 */
+	AbstractGameState copyRoot() {
+		return (AbstractGameState) root.copy(PackedMove.NONE);
+	}
+
+	/**
+	 * Called on a thread's copy of the root before each iteration, to sample
+	 * what the searching player does not know. Nothing to sample for MrX.
+	 *
+	 * @param state
+	 * @param random
+	 */
+	void determinise(AbstractGameState state, Random random) {
+	}
+
+	/**
+	 * Generates the children of a node of the tree. A node given no children
+	 * stays a leaf.
+	 *
+	 * @param state
+	 *            Position of the node
+	 * @param moves
+	 *            Filled with the moves of the children
+	 */
+	void treeMoves(AbstractGameState state, MoveList moves) {
+		MoveFilterer.filteredMoves(state, moves);
+	}
+
+	/**
+	 * @param state
+	 *            Position a rollout stopped at before the end of the game
+	 * @return the reward for MrX, between 0 and 1
+	 */
+	double heuristicReward(AbstractGameState state) {
+		return 1.0 / (1.0 + Math.exp(-(state.score() - SCORE_CENTRE) / SCORE_SCALE));
+	}
+
+	/**
+	 * @return the most moves in a rollout
+	 */
+	int rolloutPlies() {
+		return ROLLOUT_PLIES;
+	}
+
+	/**
+	 * @return true if the tree is kept for the next search
+	 */
+	boolean keepsTree() {
+		return true;
+	}
+
+	/**
+	 * @return the most visited child of the root, -1 if the root has none
+	 */
+	private int bestChild() {
+		if (!tree.isExpanded(0))
+			return -1;
+		int best = -1;
+		int first = tree.firstChild(0);
+		for (int c = first; c < first + tree.childCount(0); c++) {
+			if (best < 0 || tree.visits(c) > tree.visits(best))
+				best = c;
+		}
+		return best;
+	}
+
+	/**
+	 * Looks for the current root among the nodes of the last tree reached by
+	 * up to REUSE_PLIES moves from its root.
+	 *
+	 * @return the matching subtree, or null if there is none
+	 */
+	private NodePool reuseTree() {
+		NodePool tree = memory.tree;
+		AbstractGameState previous = memory.root;
+		memory.clear();
+		if (tree == null)
+			return null;
+		AbstractGameState state = (AbstractGameState) previous.copy(PackedMove.NONE);
+		int node = find(tree, 0, state, root.getKey(), REUSE_PLIES);
+		if (node <= 0)
+			return null;
+		return tree.subtree(node);
+	}
+
+	/**
+	 * Depth first search for a position in the tree
+	 *
+	 * @param state
+	 *            Position of node, left unchanged on return
+	 * @param key
+	 *            Zobrist key of the position looked for
+	 * @return the node of the position, or -1 if not found
+	 */
+	private static int find(NodePool tree, int node, AbstractGameState state, long key, int plies) {
+		if (node > 0 && state.getKey() == key)
+			return node;
+		if (plies == 0 || !tree.isExpanded(node))
+			return -1;
+		int first = tree.firstChild(node);
+		for (int c = first; c < first + tree.childCount(node); c++) {
+			state.apply(tree.move(c));
+			int found = find(tree, c, state, key, plies - 1);
+			state.undo();
+			if (found >= 0)
+				return found;
+		}
+		return -1;
+	}
+
+	/**
+	 * Loop of one searching thread, on its own copy of the root
+	 */
+	private void iterate() {
+		AbstractGameState state = copyRoot();
+		SearchContext context = new SearchContext(Thread.currentThread().getName());
+		Random random = ThreadLocalRandom.current();
+		while (!isStop()) {
+			determinise(state, random);
+			iteration(state, context, random);
+			iterations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Selection, expansion, rollout and backpropagation. The state is back at
+	 * the root on return.
+	 */
+	private void iteration(AbstractGameState state, SearchContext context, Random random) {
+		int node = 0;
+		int applied = 0;
+		tree.addVisit(0);
+		while (!state.isGameOver()) {
+			if (!tree.isExpanded(node)) {
+				// Only a node the search comes back to is expanded, the
+				// first visit ends in a rollout
+				if (tree.visits(node) < 2 && node != 0 || !tree.startExpansion(node))
+					break;
+				MoveList moves = context.moves(state.getDepth());
+				treeMoves(state, moves);
+				tree.expand(node, moves);
+			}
+			if (tree.childCount(node) == 0)
+				break;
+			node = select(node);
+			tree.addVisit(node);
+			state.apply(tree.move(node));
+			applied++;
+		}
+
+		double reward = rollout(state, context, random);
+
+		for (int n = node; n > 0; n = tree.parent(n)) {
+			boolean mrX = PackedMove.colour(tree.move(n)) == Colour.Black.ordinal();
+			tree.addReward(n, mrX ? reward : 1.0 - reward);
+		}
+		for (int i = 0; i < applied; i++)
+			state.undo();
+	}
+
+	/**
+	 * @param node
+	 *            An expanded node with children
+	 * @return the child with the highest upper confidence bound, an unvisited
+	 *         child if there is one
+	 */
+	private int select(int node) {
+		int first = tree.firstChild(node);
+		double logVisits = Math.log(Math.max(1, tree.visits(node)));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int c = first; c < first + tree.childCount(node); c++) {
+			int n = tree.visits(c);
+			if (n == 0)
+				return c;
+			double value = tree.meanReward(c) + EXPLORATION * Math.sqrt(logVisits / n);
+			if (value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Plays random moves among the ones MoveFilterer keeps until the game is
+	 * over or rolloutPlies() moves have been played, then takes them back.
+	 *
+	 * @return the reward for MrX, between 0 and 1
+	 */
+	private double rollout(AbstractGameState state, SearchContext context, Random random) {
+		int plies = rolloutPlies();
+		int played = 0;
+		while (played < plies && !state.isGameOver()) {
+			MoveList moves = context.moves(state.getDepth());
+			MoveFilterer.filteredMoves(state, moves);
+			if (moves.isEmpty())
+				break;
+			state.apply(moves.get(random.nextInt(moves.size())));
+			played++;
+		}
+		double reward;
+		if (state.isGameOver())
+			reward = state.getWinningPlayers().contains(Colour.Black) ? 1.0 : 0.0;
+		else
+			reward = heuristicReward(state);
+		for (int i = 0; i < played; i++)
+			state.undo();
+		return reward;
+	}
+
+	@Override
+	void printStatistics() {
+		double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+		System.out.println("MCTS with " + threads + " threads: " + iterations.get() + " iterations ("
+				+ (long) (iterations.get() / seconds) + " per second), " + tree.size() + " nodes, " + reused
+				+ " reused");
+		int first = tree.isExpanded(0) ? tree.firstChild(0) : 0;
+		int count = tree.isExpanded(0) ? tree.childCount(0) : 0;
+		for (int c = first; c < first + count; c++)
+			System.out.println("  " + PackedMove.toString(tree.move(c)) + ": " + tree.visits(c) + " visits, "
+					+ String.format("%.3f", tree.meanReward(c)));
+	}
+
+}
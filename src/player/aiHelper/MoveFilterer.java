@@ -1,16 +1,9 @@
 package player.aiHelper;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-import scotlandyard.Move;
-import scotlandyard.MoveDouble;
-import scotlandyard.MovePass;
-import scotlandyard.MoveTicket;
+import scotlandyard.Colour;
 import scotlandyard.Ticket;
 
 public class MoveFilterer {
@@ -22,9 +15,9 @@ public class MoveFilterer {
 	 * 
 	 * @param states
 	 * @param best
-	 * @return the best move
+	 * @return the best move, packed
 	 */
-	public static Move chooseSafestMove(List<AINode> states, double best) {
+	public static int chooseSafestMove(List<AINode> states, double best) {
 		double bestScore = Double.NEGATIVE_INFINITY;
 		AINode bestState = null;
 
@@ -44,37 +37,97 @@ public class MoveFilterer {
 		return bestState.getUsedMove();
 	}
 
+	/**
+	 * Generates the moves of the current player and filters them with
+	 * mrXFilter or detectiveFilter
+	 * 
+	 * @param state
+	 * @param moves
+	 *            Filled with the remaining moves
+	 */
+	static void filteredMoves(AbstractGameState state, MoveList moves) {
+		state.generateMoves(moves);
+		if (state.getCurrentPlayer() == Colour.Black)
+			mrXFilter(moves, state);
+		else
+			detectiveFilter(moves, state);
+	}
+
 	/**
 	 * Detective filter only used for MrX's AI that assumes that the detective
-	 * know MrX's location and selects the first two moves which take him closer
-	 * to MrX.
+	 * know MrX's location and keeps the two moves which take him closer to
+	 * MrX.
 	 * 
-	 * @param unfiltered
+	 * @param moves
+	 *            Moves of the detective, filtered in place
 	 * @param state
-	 * @return
 	 */
-	public static Set<Move> detectiveFilter(Set<Move> unfiltered, AbstractGameState state) {
-		if (unfiltered.contains(MovePass.instance(state.getCurrentPlayer())))
-			return unfiltered;
-
-		Map<Integer, Double> distWithAll = state.help.getGeneralDistances(state.getMrXRealLocation());
-		Set<Move> result = new HashSet<Move>();
-		for (int i = 0; i < 2; i++) {
-			Move selectedMove = null;
-			Double bestDist = Double.POSITIVE_INFINITY;
-			for (Move option : unfiltered) {
-				double tempDist = distWithAll.get(((MoveTicket) option).target);
-				if (tempDist < bestDist) {
-					bestDist = tempDist;
-					selectedMove = option;
-				}
+	static void detectiveFilter(MoveList moves, AbstractGameState state) {
+		if (moves.size() <= 2 || PackedMove.isPass(moves.get(0)))
+			return;
+
+		DistanceTable distances = state.help.getDistanceTable();
+		int mrXLocation = state.getMrXRealLocation();
+		int first = -1;
+		int second = -1;
+		int firstDist = Integer.MAX_VALUE;
+		int secondDist = Integer.MAX_VALUE;
+		for (int i = 0; i < moves.size(); i++) {
+			int dist = distances.general(mrXLocation, PackedMove.target(moves.get(i)));
+			if (dist < firstDist) {
+				second = first;
+				secondDist = firstDist;
+				first = i;
+				firstDist = dist;
+			} else if (dist < secondDist) {
+				second = i;
+				secondDist = dist;
 			}
-			if (selectedMove != null) {
-				unfiltered.remove(selectedMove);
-				result.add(selectedMove);
+		}
+		int firstMove = moves.get(first);
+		int secondMove = moves.get(second);
+		moves.set(0, firstMove);
+		moves.set(1, secondMove);
+		moves.truncate(2);
+	}
+
+	/**
+	 * Detective filter for the quiescence search: keeps the moves that catch
+	 * MrX or end next to him, the catching ones first. A detective with no
+	 * such move keeps only the move that takes him closest to MrX, so the
+	 * detectives after him still get their turn.
+	 * 
+	 * @param moves
+	 *            Moves of the detective, filtered in place
+	 * @param state
+	 */
+	static void threatFilter(MoveList moves, AbstractGameState state) {
+		if (PackedMove.isPass(moves.get(0)))
+			return;
+
+		DistanceTable distances = state.help.getDistanceTable();
+		int mrXLocation = state.getMrXRealLocation();
+		int kept = 0;
+		int closest = moves.get(0);
+		int closestDist = Integer.MAX_VALUE;
+		int capture = PackedMove.NONE;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int dist = distances.general(mrXLocation, PackedMove.target(move));
+			if (dist == 0)
+				capture = move;
+			if (dist <= 1)
+				moves.set(kept++, move);
+			if (dist < closestDist) {
+				closest = move;
+				closestDist = dist;
 			}
 		}
-		return result;
+		if (kept == 0)
+			moves.set(kept++, closest);
+		moves.truncate(kept);
+		if (capture != PackedMove.NONE)
+			moves.moveToFront(capture);
 	}
 
 	/**
@@ -86,32 +139,30 @@ public class MoveFilterer {
 	 * - If on boat node, always use secret moves if secret tickets are available
 	 * - Can use double moves ONLY when there are two or more detectives within
 	 *   two or less moves away
-	 * @param unfiltered
+	 * The moves hold only MrX's single moves, as generated by the state; the
+	 * double moves are generated here, and only if the rules let MrX use them.
+	 * 
+	 * @param moves
+	 *            MrX's single moves, filtered in place
 	 * @param state
-	 * @return New set of moves
 	 */
-	public static Set<Move> mrXFilter(Set<Move> unfiltered, AbstractGameState state) {
+	static void mrXFilter(MoveList moves, AbstractGameState state) {
 		List<Boolean> roundVisibility = state.getRounds();
 
 		double detectivesClose = state.help.getNumOfDetectivesCloserThan(state.getMrXRealLocation(), 2.0);
 
-		Set<MoveDouble> doubleMoves = new HashSet<MoveDouble>();
+		// check if all moves are taxis and if mrX has secret moves
+		int secret = Ticket.Secret.ordinal();
+		int taxi = Ticket.Taxi.ordinal();
 		boolean allTaxiMoves = true;
 		boolean hasSecretMoves = false;
-		Iterator<Move> it = unfiltered.iterator();
-		// check if all moves are taxis and if mrX has secret moves
-		// separate all double moves
-		while (it.hasNext()) {
-			Move m = it.next();
-			if (m instanceof MoveDouble) {
-				doubleMoves.add((MoveDouble) m);
-				it.remove();
-			} else {
-				if (((MoveTicket) m).ticket != Ticket.Secret)
-					allTaxiMoves &= ((MoveTicket) m).ticket == Ticket.Taxi ? true : false;
-				else
-					hasSecretMoves = true;
-			}
+		int singles = moves.size();
+		for (int i = 0; i < singles; i++) {
+			int ticket = PackedMove.ticket(moves.get(i));
+			if (ticket != secret)
+				allTaxiMoves &= ticket == taxi;
+			else
+				hasSecretMoves = true;
 		}
 
 		// check if mrX is visible at next round
@@ -121,51 +172,26 @@ public class MoveFilterer {
 		else
 			mrXVisibleNextRound = roundVisibility.get(state.getRound() + 1);
 
-		// remove secret move if necessary
 		int location = state.getMrXRealLocation();
-		if (allTaxiMoves || mrXVisibleNextRound || state.getRound() <= 2) {
-			it = unfiltered.iterator();
-			while (it.hasNext()) {
-				MoveTicket m = (MoveTicket) it.next();
-				if (m.ticket == Ticket.Secret)
-					it.remove();
-			}
-			Iterator<MoveDouble> doubleIt = doubleMoves.iterator();
-			while (doubleIt.hasNext()) {
-				MoveDouble m = doubleIt.next();
-				if (m.move1.ticket == Ticket.Secret)
-					doubleIt.remove();
-			}
-			// if on boat use secret move
-		} else if ((location == 194 || location == 157 || location == 115 || location == 108) && hasSecretMoves) {
-			it = unfiltered.iterator();
-			while (it.hasNext()) {
-				MoveTicket m = (MoveTicket) it.next();
-				if (m.ticket != Ticket.Secret)
-					it.remove();
-			}
-			if (detectivesClose > 2) {
-				Iterator<MoveDouble> doubleIt = doubleMoves.iterator();
-				while (doubleIt.hasNext()) {
-					MoveDouble md = doubleIt.next();
-					if (md.move2.target != location && md.move1.ticket == Ticket.Secret)
-						unfiltered.add(md);
-				}
-			}
-			return unfiltered;
-		}
+		boolean noSecret = allTaxiMoves || mrXVisibleNextRound || state.getRound() <= 2;
+		// if on boat use secret move
+		boolean onlySecret = !noSecret
+				&& (location == 194 || location == 157 || location == 115 || location == 108) && hasSecretMoves;
 
 		// detectivesClose > uniqueTaxiTargets?
-		if (detectivesClose > 2) {
-			Iterator<MoveDouble> doubleIt = doubleMoves.iterator();
-			while (doubleIt.hasNext()) {
-				MoveDouble md = doubleIt.next();
-				if (md.move2.target != location)
-					unfiltered.add(md);
+		if (detectivesClose > 2)
+			state.state.addDoubleMoves(moves, singles, !noSecret, !onlySecret, location);
+
+		// remove secret moves, or all the others, from the single moves
+		if (noSecret || onlySecret) {
+			int kept = 0;
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				if (i >= singles || (PackedMove.ticket(move) == secret) == onlySecret)
+					moves.set(kept++, move);
 			}
+			moves.truncate(kept);
 		}
-
-		return unfiltered;
 	}
 
 }
@@ -0,0 +1,119 @@
+package player.aiHelper;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of packed moves with a score for each, see PackedMove. The
+ * search keeps one list per ply, so generating and ordering the moves of a
+ * node does not allocate once the lists have grown to their working size.
+ */
+public final class MoveList {
+
+	private int[] moves;
+	private double[] scores;
+	private int size;
+
+	public MoveList() {
+		moves = new int[32];
+		scores = new double[32];
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int get(int index) {
+		return moves[index];
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(int move) {
+		if (size == moves.length) {
+			moves = Arrays.copyOf(moves, size * 2);
+			scores = Arrays.copyOf(scores, size * 2);
+		}
+		moves[size++] = move;
+	}
+
+	/**
+	 * @param move
+	 * @return true if the list holds move
+	 */
+	public boolean contains(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps the first size moves only
+	 *
+	 * @param size
+	 */
+	public void truncate(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Overwrites the move at index, e.g. to compact the list while filtering
+	 *
+	 * @param index
+	 * @param move
+	 */
+	public void set(int index, int move) {
+		moves[index] = move;
+	}
+
+	public void setScore(int index, double score) {
+		scores[index] = score;
+	}
+
+	/**
+	 * Sorts the moves by ascending score. Insertion sort, the lists are short
+	 * and ties keep their order.
+	 */
+	public void sort() {
+		for (int i = 1; i < size; i++) {
+			int move = moves[i];
+			double score = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] > score) {
+				moves[j + 1] = moves[j];
+				scores[j + 1] = scores[j];
+				j--;
+			}
+			moves[j + 1] = move;
+			scores[j + 1] = score;
+		}
+	}
+
+	/**
+	 * Moves the given move to the front, keeping the order of the others. Does
+	 * nothing if the list does not hold it.
+	 *
+	 * @param move
+	 */
+	public void moveToFront(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) {
+				double score = scores[i];
+				System.arraycopy(moves, 0, moves, 1, i);
+				System.arraycopy(scores, 0, scores, 1, i);
+				moves[0] = move;
+				scores[0] = score;
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package player.aiHelper;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import scotlandyard.Ticket;
+
+/**
+ * Probability of MrX being at each location of the board, as far as the
+ * detectives can tell. MrX is assumed to pick uniformly among the locations
+ * he can reach with the ticket he used; locations occupied by detectives are
+ * then ruled out and the rest renormalised.
+ */
+public final class MrXBelief {
+
+	private final CompactGraph graph;
+	private final double[] probabilities;
+	// Work array for move(), allocated on first use
+	private double[] next;
+
+	/**
+	 * Uniform belief over the given locations.
+	 *
+	 * @param graph
+	 * @param locations
+	 *            Locations MrX can be at, not empty
+	 */
+	public MrXBelief(CompactGraph graph, LocationSet locations) {
+		this.graph = graph;
+		this.probabilities = new double[graph.size()];
+		for (int l = locations.next(0); l >= 0; l = locations.next(l + 1))
+			probabilities[l] = 1.0;
+		normalise();
+	}
+
+	/**
+	 * Creates a copy of other.
+	 *
+	 * @param other
+	 */
+	public MrXBelief(MrXBelief other) {
+		this.graph = other.graph;
+		this.probabilities = other.probabilities.clone();
+	}
+
+	/**
+	 * Makes this belief equal to other
+	 *
+	 * @param other
+	 *            A belief on the same graph
+	 */
+	public void set(MrXBelief other) {
+		System.arraycopy(other.probabilities, 0, probabilities, 0, probabilities.length);
+	}
+
+	public double probability(int location) {
+		return probabilities[location];
+	}
+
+	/**
+	 * MrX has been seen at location
+	 *
+	 * @param location
+	 */
+	public void reveal(int location) {
+		Arrays.fill(probabilities, 0.0);
+		probabilities[location] = 1.0;
+	}
+
+	/**
+	 * MrX is not at location, e.g. because a detective is there. Does not
+	 * renormalise, see normalise().
+	 *
+	 * @param location
+	 */
+	public void remove(int location) {
+		probabilities[location] = 0.0;
+	}
+
+	/**
+	 * Spreads the probability of each location uniformly over the locations
+	 * reachable from it with the ticket. A location joined to it by several
+	 * routes the ticket can use, e.g. taxi and bus for a secret ticket, gets
+	 * one share. Does not renormalise, see normalise().
+	 *
+	 * @param ticket
+	 *            Ticket MrX used
+	 */
+	public void move(Ticket ticket) {
+		if (next == null)
+			next = new double[probabilities.length];
+		Arrays.fill(next, 0.0);
+		int mask = MrXTracker.mask(ticket);
+		for (int l = 0; l < probabilities.length; l++) {
+			double p = probabilities[l];
+			if (p == 0.0)
+				continue;
+			int count = 0;
+			for (int e = graph.edgesStart(l); e < graph.edgesEnd(l); e++) {
+				if (isFirstEdgeTo(l, e, mask))
+					count++;
+			}
+			if (count == 0)
+				continue;
+			double share = p / count;
+			for (int e = graph.edgesStart(l); e < graph.edgesEnd(l); e++) {
+				if (isFirstEdgeTo(l, e, mask))
+					next[graph.target(e)] += share;
+			}
+		}
+		System.arraycopy(next, 0, probabilities, 0, probabilities.length);
+	}
+
+	/**
+	 * @param location
+	 * @param edge
+	 *            An edge from location
+	 * @param mask
+	 *            Transports the ticket can use
+	 * @return true if edge can be used with the ticket and is the first such
+	 *         edge from location to its target
+	 */
+	private boolean isFirstEdgeTo(int location, int edge, int mask) {
+		if ((graph.route(edge) & mask) == 0)
+			return false;
+		int target = graph.target(edge);
+		for (int e = graph.edgesStart(location); e < edge; e++) {
+			if (graph.target(e) == target && (graph.route(e) & mask) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Scales the probabilities so they add up to 1. If nothing is left, the
+	 * belief stays empty.
+	 */
+	public void normalise() {
+		double total = 0.0;
+		for (double p : probabilities)
+			total += p;
+		if (total == 0.0)
+			return;
+		for (int l = 0; l < probabilities.length; l++)
+			probabilities[l] /= total;
+	}
+
+	/**
+	 * Finds the most likely locations, most likely first.
+	 *
+	 * @param locations
+	 *            Filled with up to locations.length locations of non zero
+	 *            probability
+	 * @return the number of locations filled in
+	 */
+	public int mostLikely(int[] locations) {
+		int count = 0;
+		for (int l = 0; l < probabilities.length; l++) {
+			double p = probabilities[l];
+			if (p == 0.0 || (count == locations.length && p <= probabilities[locations[count - 1]]))
+				continue;
+			// Insert in order, dropping the least likely if full
+			int i = count < locations.length ? count++ : count - 1;
+			while (i > 0 && probabilities[locations[i - 1]] < p) {
+				locations[i] = locations[i - 1];
+				i--;
+			}
+			locations[i] = l;
+		}
+		return count;
+	}
+
+	/**
+	 * @param random
+	 * @return a location drawn from the belief, or -1 if it is empty
+	 */
+	public int sample(Random random) {
+		double target = random.nextDouble();
+		int last = -1;
+		for (int l = 0; l < probabilities.length; l++) {
+			if (probabilities[l] == 0.0)
+				continue;
+			target -= probabilities[l];
+			last = l;
+			if (target < 0)
+				return l;
+		}
+		return last;
+	}
+
+}
@@ -0,0 +1,125 @@
+package player.aiHelper;
+
+import scotlandyard.Ticket;
+
+/**
+ * Keeps MrX's possible locations up to date as the detectives see his
+ * tickets. For every location and ticket the locations MrX can reach are
+ * precomputed as a bitset, so a move maps a LocationSet to the next one with
+ * one OR per candidate location. Built once per graph, see
+ * DistanceTable.getMrXTracker().
+ */
+public final class MrXTracker {
+
+	private static final int TICKETS = Ticket.values().length;
+
+	private final int size;
+	private final int words;
+	// targets[(location * TICKETS + ticket) * words + word]
+	private final long[] targets;
+
+	MrXTracker(CompactGraph graph) {
+		size = graph.size();
+		words = new LocationSet(size).wordCount();
+		targets = new long[size * TICKETS * words];
+		for (int location = 0; location < size; location++) {
+			for (Ticket ticket : Ticket.values()) {
+				int mask = mask(ticket);
+				int base = (location * TICKETS + ticket.ordinal()) * words;
+				for (int e = graph.edgesStart(location); e < graph.edgesEnd(location); e++) {
+					if ((graph.route(e) & mask) != 0) {
+						int target = graph.target(e);
+						targets[base + (target >>> 6)] |= 1L << target;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param ticket
+	 * @return the transports the ticket can be used on
+	 */
+	static int mask(Ticket ticket) {
+		switch (ticket) {
+		case Taxi:
+			return CompactGraph.TAXI;
+		case Bus:
+			return CompactGraph.BUS;
+		case Underground:
+			return CompactGraph.UNDERGROUND;
+		case Secret:
+			return CompactGraph.ALL;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return an empty set sized for the graph
+	 */
+	public LocationSet emptySet() {
+		return new LocationSet(size);
+	}
+
+	/**
+	 * @return a set with every location of the board that has at least one
+	 *         edge
+	 */
+	public LocationSet allLocations() {
+		LocationSet all = emptySet();
+		for (int location = 0; location < size; location++) {
+			int base = location * TICKETS * words;
+			for (int i = 0; i < TICKETS * words; i++) {
+				if (targets[base + i] != 0) {
+					all.add(location);
+					break;
+				}
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Checks whether any location outside blocked can be reached from
+	 * location with the ticket. Works for the detectives' tickets too.
+	 *
+	 * @param location
+	 * @param ticket
+	 *            Ordinal of the ticket
+	 * @param blocked
+	 *            Locations that cannot be moved to
+	 * @return true if there is at least one such location
+	 */
+	boolean canReach(int location, int ticket, LocationSet blocked) {
+		int base = (location * TICKETS + ticket) * words;
+		for (int w = 0; w < words; w++) {
+			if ((targets[base + w] & ~blocked.word(w)) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Computes where MrX can be after using the ticket from any of the
+	 * locations in from. Locations he cannot leave with the ticket drop out.
+	 *
+	 * @param from
+	 *            Possible locations before the move
+	 * @param ticket
+	 *            Ticket MrX used
+	 * @param into
+	 *            Overwritten with the possible locations after the move, must
+	 *            not be from
+	 */
+	public void move(LocationSet from, Ticket ticket, LocationSet into) {
+		into.clear();
+		int t = ticket.ordinal();
+		for (int l = from.next(0); l >= 0; l = from.next(l + 1)) {
+			int base = (l * TICKETS + t) * words;
+			for (int w = 0; w < words; w++)
+				into.or(w, targets[base + w]);
+		}
+	}
+
+}
@@ -1,8 +1,5 @@
 package player.aiHelper;
 
-import java.util.List;
-import java.util.Set;
-
 import scotlandyard.Colour;
 import scotlandyard.Graph;
 import scotlandyard.Move;
@@ -12,9 +9,17 @@ import scotlandyard.Ticket;
 
 public class MyAIGameState extends AbstractGameState {
 
-	private MyAIGameState(Move move, int detectives, List<Boolean> rounds, Graph<Integer, Route> graph,
-			String graphFilename) {
-		super(move, detectives, rounds, graph, graphFilename);
+	/**
+	 * Size of the score cache shared by the states of a search, in bits.
+	 */
+	private static final int CACHE_BITS = 16;
+
+	private final ScoreCache cache;
+
+	private MyAIGameState(int move, SearchState state, Graph<Integer, Route> graph, DistanceTable distances,
+			ScoreCache cache) {
+		super(move, state, graph, distances);
+		this.cache = cache;
 	}
 
 	/**
@@ -23,42 +28,65 @@ public class MyAIGameState extends AbstractGameState {
 	 * tickets, secret ticket count, whether on a node with a boat route or not.
 	 * If MrX wins, returns 200, if detectives win, return -200.
 	 * 
+	 * The score only depends on the position, so it is cached by the Zobrist
+	 * key of the state in a cache shared by all the copies of the root.
+	 * 
 	 * @return a score for current game state
 	 */
 	@Override
 	public double score() {
-		
-		double score = 0.0;
-		Set<Colour> winners = this.winners;
-		if (!winners.isEmpty()) {
+		long key = getKey();
+		double score = cache.probe(key);
+		if (Double.isNaN(score)) {
+			score = evaluate();
+			cache.store(key, score);
+		}
+		return score;
+	}
+
+	/**
+	 * Computes the score from the packed state. Every feature is a few reads
+	 * of the state and of the per-location tables of the DistanceTable.
+	 */
+	double evaluate() {
+		if (isGameOver()) {
 			if (getWinningPlayers().contains(Colour.Black))
 				return 200;
 			else
 				return -200;
 		}
 
-		// parameter 1
-		double minDetectiveDist = help.getMinDetectiveDistance(playerMap.get(Colour.Black).getLocation());
-
-		// parameter 2, overall position
-		double minDistanceFromCorner = help.getMinDistanceFromCorner(playerMap.get(Colour.Black).getLocation());
+		DistanceTable distances = help.getDistanceTable();
+		int location = getMrXRealLocation();
 
 		// parameter 3, unique targets
-		Set<Integer> uniqueTargets = help.getUniqueTargets(playerMap.get(Colour.Black).getLocation());
-		if (uniqueTargets.isEmpty())
+		int uniqueTargets = uniqueTargets(location);
+		if (uniqueTargets == 0)
 			return -200;
 
+		// parameter 1
+		double minDetectiveDist = Double.POSITIVE_INFINITY;
 		// parameter 4
-		int detectivesWithLowTaxiTickets = help.getDetectivesWithLowTaxiTickets(playerMap.get(Colour.Black)
-				.getLocation());
+		int detectivesWithLowTaxiTickets = 0;
+		for (int p = 1; p < state.getPlayerCount(); p++) {
+			int detective = state.getLocation(p);
+			if (state.canMove(p))
+				minDetectiveDist = Math.min(minDetectiveDist, DistanceTable.toDouble(distances.general(location, detective)));
+			if (state.getTickets(p, Ticket.Taxi) < DistanceTable.toDouble(distances.taxi(location, detective)))
+				detectivesWithLowTaxiTickets++;
+		}
 
-		int secretMoveCount = getPlayerTickets(Colour.Black, Ticket.Secret);
+		// parameter 2, overall position
+		double minDistanceFromCorner = DistanceTable.toDouble(distances.cornerDistance(location));
 
-		int onBoatAndHasSecret = help.onBoatAndHasSecret(playerMap.get(Colour.Black).getLocation()) ? 1 : 0;
+		int secretMoveCount = state.getTickets(SearchState.MRX, Ticket.Secret);
 
+		int onBoatAndHasSecret = secretMoveCount > 0 && distances.hasBoat(location) ? 1 : 0;
+
+		double score = 0.0;
 		score += 5 * minDetectiveDist;
 		score += 2.5 * secretMoveCount;
-		score += 2 * uniqueTargets.size();
+		score += 2 * uniqueTargets;
 		score += 1.5 * onBoatAndHasSecret;
 		score += 1 * minDistanceFromCorner;
 		score += 1 * detectivesWithLowTaxiTickets;
@@ -66,33 +94,83 @@ public class MyAIGameState extends AbstractGameState {
 		return score;
 	}
 
+	/**
+	 * The number of different locations MrX can reach from location with one
+	 * of his normal tickets (secret tickets for boats) without moving onto a
+	 * detective.
+	 */
+	private int uniqueTargets(int location) {
+		CompactGraph compactGraph = state.getGraph();
+		int count = 0;
+		int start = compactGraph.edgesStart(location);
+		for (int e = start; e < compactGraph.edgesEnd(location); e++) {
+			int target = compactGraph.target(e);
+			if (!canUse(compactGraph.route(e)) || state.isDetectiveAt(target))
+				continue;
+			// Count each target once, at the first edge MrX can use to reach it
+			boolean counted = false;
+			for (int f = start; f < e && !counted; f++)
+				counted = compactGraph.target(f) == target && canUse(compactGraph.route(f));
+			if (!counted)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @param route
+	 *            Transport bitmask of an edge
+	 * @return true if MrX has a ticket for the route
+	 */
+	private boolean canUse(int route) {
+		Ticket ticket;
+		if (route == CompactGraph.TAXI)
+			ticket = Ticket.Taxi;
+		else if (route == CompactGraph.BUS)
+			ticket = Ticket.Bus;
+		else if (route == CompactGraph.UNDERGROUND)
+			ticket = Ticket.Underground;
+		else
+			ticket = Ticket.Secret;
+		return state.getTickets(SearchState.MRX, ticket) > 0;
+	}
+
 	@Override
 	public final void simulateMove() {
-		simulateMove(getUsedMove());
+		playMove(getUsedMove());
+	}
+
+	@Override
+	final void playMove(int move) {
+		simulateMove(move);
 		nextPlayer();
 	}
 
 	@Override
-	public AINode copy(Move move) {
-		AINode state = createGameState(move, this, getMrXRealLocation(), graph, graphFilename);
+	public AINode copy(int move) {
+		AINode state = new MyAIGameState(move, this.state.copy(), graph, help.getDistanceTable(), cache);
 		state.setDepth(this.getDepth() + 1);
 		return state;
 	}
 
-	public static AINode createGameState(Move move, ScotlandYardView view, int location, Graph<Integer, Route> graph,
-			String graphFilename) {
-		MyAIGameState newModel = new MyAIGameState(move, view.getPlayers().size() - 1, view.getRounds(), graph,
-				graphFilename);
-		newModel.join(null, Colour.Black, location, createTicketMap(view, Colour.Black));
-		newModel.join(null, Colour.Blue, view.getPlayerLocation(Colour.Blue), createTicketMap(view, Colour.Blue));
-		newModel.join(null, Colour.Green, view.getPlayerLocation(Colour.Green), createTicketMap(view, Colour.Green));
-		newModel.join(null, Colour.Red, view.getPlayerLocation(Colour.Red), createTicketMap(view, Colour.Red));
-		newModel.join(null, Colour.White, view.getPlayerLocation(Colour.White), createTicketMap(view, Colour.White));
-		newModel.join(null, Colour.Yellow, view.getPlayerLocation(Colour.Yellow), createTicketMap(view, Colour.Yellow));
-		while (view.getCurrentPlayer() != newModel.getCurrentPlayer())
-			newModel.nextPlayer();
-		newModel.round = view.getRound();
-		return newModel;
+	/**
+	 * Creates a MrX game state from the position of another state, with its
+	 * own score cache. Used to play the turns of all the players in order from
+	 * the position of a detective's state.
+	 *
+	 * @param other
+	 * @return a state at depth 0 with no associated move
+	 */
+	static MyAIGameState copyOf(AbstractGameState other) {
+		return new MyAIGameState(PackedMove.NONE, other.state.copy(), other.graph, other.help.getDistanceTable(),
+				new ScoreCache(CACHE_BITS));
+	}
+
+	public static AINode createGameState(Move move, ScotlandYardView view, int location, Graph<Integer, Route> graph) {
+		DistanceTable distances = DistanceTable.forGraph(graph);
+		return new MyAIGameState(move == null ? PackedMove.NONE : PackedMove.encode(move),
+				SearchState.fromView(view, location, distances), graph,
+				distances, new ScoreCache(CACHE_BITS));
 	}
 
 }
@@ -0,0 +1,221 @@
+package player.aiHelper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size pool of Monte Carlo tree nodes, kept as parallel arrays indexed
+ * by node number instead of one object per node. A node holds the packed
+ * move that leads to it, its parent, where its children start and how many
+ * there are, its visit count and its total reward. The children of a node
+ * are allocated together, so they are contiguous. Node 0 is the root.
+ *
+ * Any number of threads may search the tree at once. Visits and rewards are
+ * atomic, and a node is expanded by the one thread that moves it from
+ * UNEXPANDED to EXPANDING; its children are published by setting it to
+ * EXPANDED. Rewards are stored as fixed point numbers, for the player who
+ * made the move leading to the node.
+ */
+public final class NodePool {
+
+	private static final int UNEXPANDED = 0;
+	private static final int EXPANDING = 1;
+	private static final int EXPANDED = 2;
+
+	private static final double REWARD_SCALE = 1 << 20;
+
+	private final int capacity;
+	private final AtomicInteger size;
+	private final int[] moves;
+	private final int[] parents;
+	private final int[] firstChildren;
+	private final int[] childCounts;
+	private final AtomicIntegerArray states;
+	private final AtomicIntegerArray visits;
+	private final AtomicLongArray rewards;
+
+	/**
+	 * Creates a pool holding only the root
+	 *
+	 * @param capacity
+	 *            Most nodes the pool can hold
+	 */
+	public NodePool(int capacity) {
+		this.capacity = capacity;
+		size = new AtomicInteger(1);
+		moves = new int[capacity];
+		parents = new int[capacity];
+		firstChildren = new int[capacity];
+		childCounts = new int[capacity];
+		states = new AtomicIntegerArray(capacity);
+		visits = new AtomicIntegerArray(capacity);
+		rewards = new AtomicLongArray(capacity);
+		moves[0] = PackedMove.NONE;
+		parents[0] = -1;
+	}
+
+	/**
+	 * @return the number of nodes in use
+	 */
+	public int size() {
+		return Math.min(size.get(), capacity);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int move(int node) {
+		return moves[node];
+	}
+
+	/**
+	 * @param node
+	 * @return the parent of node, -1 for the root
+	 */
+	public int parent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * @param node
+	 * @return true if the children of node are in the pool
+	 */
+	public boolean isExpanded(int node) {
+		return states.get(node) == EXPANDED;
+	}
+
+	/**
+	 * @param node
+	 *            An expanded node
+	 * @return the first child of node
+	 */
+	public int firstChild(int node) {
+		return firstChildren[node];
+	}
+
+	/**
+	 * @param node
+	 *            An expanded node
+	 * @return the number of children of node, 0 if the pool was full when
+	 *         it was expanded
+	 */
+	public int childCount(int node) {
+		return childCounts[node];
+	}
+
+	public int visits(int node) {
+		return visits.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return the average reward of node for the player who moved into it, 0
+	 *         if it was never visited
+	 */
+	public double meanReward(int node) {
+		int n = visits.get(node);
+		if (n == 0)
+			return 0.0;
+		return rewards.get(node) / REWARD_SCALE / n;
+	}
+
+	/**
+	 * Counts a visit before its reward is known. Until the reward is added
+	 * the visit counts as a loss, which steers the other threads away from
+	 * the node (virtual loss).
+	 *
+	 * @param node
+	 */
+	public void addVisit(int node) {
+		visits.incrementAndGet(node);
+	}
+
+	/**
+	 * @param node
+	 * @param reward
+	 *            Between 0 and 1, for the player who moved into node
+	 */
+	public void addReward(int node, double reward) {
+		rewards.addAndGet(node, (long) (reward * REWARD_SCALE));
+	}
+
+	/**
+	 * Claims a node for expansion
+	 *
+	 * @param node
+	 * @return true if the calling thread is the one that must expand node
+	 */
+	public boolean startExpansion(int node) {
+		return states.compareAndSet(node, UNEXPANDED, EXPANDING);
+	}
+
+	/**
+	 * Adds the children of a node claimed with startExpansion and publishes
+	 * them. If the pool is full the node gets no children and stays a leaf.
+	 *
+	 * @param node
+	 * @param children
+	 *            Packed moves of the children
+	 */
+	public void expand(int node, MoveList children) {
+		int count = children.size();
+		int first = size.getAndAdd(count);
+		if (first + count > capacity) {
+			count = 0;
+			first = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			moves[first + i] = children.get(i);
+			parents[first + i] = node;
+		}
+		firstChildren[node] = first;
+		childCounts[node] = count;
+		states.set(node, EXPANDED);
+	}
+
+	/**
+	 * Copies the subtree under a node into a new pool, where it becomes the
+	 * root. Used to keep the statistics of the part of the tree the game
+	 * actually went into. Must not be called while the tree is searched.
+	 *
+	 * @param node
+	 *            Root of the subtree
+	 * @return a pool of the same capacity holding the subtree
+	 */
+	public NodePool subtree(int node) {
+		NodePool pool = new NodePool(capacity);
+		pool.visits.set(0, visits.get(node));
+		pool.rewards.set(0, rewards.get(node));
+		// Breadth first: the nodes in pool from index next on still need
+		// their children copied; from[] maps them back to this pool
+		int[] from = new int[Math.min(size(), capacity)];
+		from[0] = node;
+		int next = 0;
+		int end = 1;
+		while (next < end) {
+			int old = from[next];
+			if (states.get(old) == EXPANDED) {
+				int count = childCounts[old];
+				int first = end;
+				for (int i = 0; i < count; i++) {
+					int child = firstChildren[old] + i;
+					pool.moves[first + i] = moves[child];
+					pool.parents[first + i] = next;
+					pool.visits.set(first + i, visits.get(child));
+					pool.rewards.set(first + i, rewards.get(child));
+					from[first + i] = child;
+				}
+				pool.firstChildren[next] = first;
+				pool.childCounts[next] = count;
+				pool.states.set(next, EXPANDED);
+				end = end + count;
+			}
+			next++;
+		}
+		pool.size.set(end);
+		return pool;
+	}
+
+}
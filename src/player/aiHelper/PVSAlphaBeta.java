@@ -0,0 +1,141 @@
+package player.aiHelper;
+
+import java.util.List;
+
+import scotlandyard.Colour;
+
+/**
+ * AlphaBeta with principal variation search and aspiration windows. Only the
+ * first move of a node, the best one by the move ordering, is searched with
+ * the full window; the others are searched with a null window just to prove
+ * that they are not better, and are searched again with the full window only
+ * if they turn out to be. The root is searched with a window centred on the
+ * value of the previous iteration, which is widened and searched again if the
+ * value falls outside of it.
+ */
+public class PVSAlphaBeta extends AlphaBeta {
+
+	/**
+	 * Half width of the first aspiration window
+	 */
+	private static final double ASPIRATION_WINDOW = 4.0;
+
+	/**
+	 * A window is widened this many times before the search gives up on it and
+	 * searches the root with an infinite bound
+	 */
+	private static final int MAX_WIDENINGS = 3;
+
+	// Value of the root in the last completed iteration
+	private double lastValue;
+
+	public PVSAlphaBeta(AINode root, Colour maxColour) {
+		super(root, maxColour);
+		lastValue = Double.NaN;
+	}
+
+	/**
+	 * Run the algorithm once with an aspiration window, searching the root
+	 * again with a wider window until its value falls inside it.
+	 *
+	 * @param initialState
+	 *            The initial state
+	 * @return A best move, PackedMove.NONE if the search was stopped
+	 */
+	@Override
+	int decision(AINode initialState) {
+		SearchContext context = context();
+		context.maxDepth = getMaxDepth();
+		List<AINode> successors = successors(initialState);
+		if (successors.isEmpty())
+			return PackedMove.NONE;
+
+		double delta = ASPIRATION_WINDOW;
+		int lowWidenings = 0;
+		int highWidenings = 0;
+		double alpha = Double.isNaN(lastValue) ? Double.NEGATIVE_INFINITY : lastValue - delta;
+		double beta = Double.isNaN(lastValue) ? Double.POSITIVE_INFINITY : lastValue + delta;
+		double best;
+		while (true) {
+			best = rootValue(successors, alpha, beta, context);
+			if (isStop())
+				return PackedMove.NONE;
+			if (best <= alpha) {
+				lowWidenings++;
+				alpha = lowWidenings > MAX_WIDENINGS ? Double.NEGATIVE_INFINITY
+						: lastValue - delta * Math.pow(4, lowWidenings);
+			} else if (best >= beta) {
+				highWidenings++;
+				beta = highWidenings > MAX_WIDENINGS ? Double.POSITIVE_INFINITY
+						: lastValue + delta * Math.pow(4, highWidenings);
+			} else {
+				break;
+			}
+			System.out.println("Aspiration window failed at depth " + context.maxDepth + ", searching again with ("
+					+ alpha + ", " + beta + ")");
+		}
+
+		lastValue = best;
+		context.completedDepth = context.maxDepth;
+		iterationFinished(context.maxDepth);
+		return MoveFilterer.chooseSafestMove(getSuccessors(), best);
+	}
+
+	/**
+	 * Searches the successors of the root, the first with the window
+	 * (alpha, beta) and the others with a null window.
+	 *
+	 * @return the value of the root, a bound if it is outside of the window
+	 */
+	private double rootValue(List<AINode> successors, double alpha, double beta, SearchContext context) {
+		double windowAlpha = alpha;
+		double best = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < successors.size(); i++) {
+			AINode s = successors.get(i);
+			double tempValue;
+			if (i == 0) {
+				tempValue = value(s, alpha, beta, context);
+			} else {
+				tempValue = value(s, alpha, Math.nextUp(alpha), context);
+				if (tempValue > alpha && tempValue < beta && !isStop())
+					tempValue = value(s, alpha, beta, context);
+			}
+			// Values at or below the window are only upper bounds
+			if (!isStop() && tempValue > windowAlpha)
+				rootSearched(s, tempValue);
+			best = Math.max(best, tempValue);
+			s.setScore(tempValue);
+			storeValue(s, tempValue); //Store it for the next iteration
+			if (best >= beta)
+				break;
+			alpha = Math.max(alpha, best);
+		}
+		return best;
+	}
+
+	/**
+	 * Searches the first move with the window of the node and the others with
+	 * a null window, searching them again with the full window if they turn
+	 * out to be better than the best move so far.
+	 */
+	@Override
+	double searchMove(AbstractGameState state, int move, int index, boolean max, double alpha, double beta,
+			SearchContext context) {
+		if (index == 0)
+			return super.searchMove(state, move, index, max, alpha, beta, context);
+		state.apply(move);
+		double value;
+		if (max) {
+			value = value(state, alpha, Math.nextUp(alpha), context);
+			if (value > alpha && value < beta && !isStop())
+				value = value(state, alpha, beta, context);
+		} else {
+			value = value(state, Math.nextDown(beta), beta, context);
+			if (value < beta && value > alpha && !isStop())
+				value = value(state, alpha, beta, context);
+		}
+		state.undo();
+		return value;
+	}
+
+}
@@ -0,0 +1,206 @@
+package player.aiHelper;
+
+import scotlandyard.Colour;
+import scotlandyard.Move;
+import scotlandyard.MoveDouble;
+import scotlandyard.MovePass;
+import scotlandyard.MoveTicket;
+import scotlandyard.Ticket;
+
+/**
+ * Moves packed into a single int, so the search can generate, store and
+ * compare them without creating Move objects. From the lowest bit: the first
+ * target (9 bits), the second target of a double move (9 bits), the first and
+ * second tickets (3 bits each), the colour (3 bits) and the kind of move (2
+ * bits). The kind is never 0, so NONE is not a valid move.
+ */
+public final class PackedMove {
+
+	/**
+	 * No move, e.g. an empty slot of a table
+	 */
+	public static final int NONE = 0;
+
+	private static final int TICKET = 1;
+	private static final int DOUBLE = 2;
+	private static final int PASS = 3;
+
+	private static final int TARGET_BITS = 9;
+	private static final int TARGET_MASK = (1 << TARGET_BITS) - 1;
+	private static final int TARGET2_SHIFT = TARGET_BITS;
+	private static final int TICKET1_SHIFT = 2 * TARGET_BITS;
+	private static final int TICKET2_SHIFT = TICKET1_SHIFT + 3;
+	private static final int COLOUR_SHIFT = TICKET2_SHIFT + 3;
+	private static final int KIND_SHIFT = COLOUR_SHIFT + 3;
+
+	private static final Colour[] colours = Colour.values();
+	private static final Ticket[] tickets = Ticket.values();
+
+	private PackedMove() {
+	}
+
+	/**
+	 * @param colour
+	 *            Ordinal of the colour of the player
+	 * @param ticket
+	 *            Ordinal of the ticket
+	 * @param target
+	 * @return a single move
+	 */
+	public static int ticket(int colour, int ticket, int target) {
+		return TICKET << KIND_SHIFT | colour << COLOUR_SHIFT | ticket << TICKET1_SHIFT | target;
+	}
+
+	/**
+	 * @param first
+	 *            A single move
+	 * @param ticket
+	 *            Ordinal of the second ticket
+	 * @param target
+	 *            Second target
+	 * @return a double move made of first and the second move
+	 */
+	public static int doubleMove(int first, int ticket, int target) {
+		return first & ~(3 << KIND_SHIFT) | DOUBLE << KIND_SHIFT | ticket << TICKET2_SHIFT
+				| target << TARGET2_SHIFT;
+	}
+
+	/**
+	 * @param colour
+	 *            Ordinal of the colour of the player
+	 * @return a pass
+	 */
+	public static int pass(int colour) {
+		return PASS << KIND_SHIFT | colour << COLOUR_SHIFT;
+	}
+
+	private static int kind(int move) {
+		return move >>> KIND_SHIFT;
+	}
+
+	public static boolean isDouble(int move) {
+		return kind(move) == DOUBLE;
+	}
+
+	public static boolean isPass(int move) {
+		return kind(move) == PASS;
+	}
+
+	/**
+	 * @param move
+	 * @return ordinal of the colour of the player making the move
+	 */
+	public static int colour(int move) {
+		return move >>> COLOUR_SHIFT & 7;
+	}
+
+	/**
+	 * @param move
+	 * @return ordinal of the (first) ticket, meaningless for a pass
+	 */
+	public static int ticket(int move) {
+		return move >>> TICKET1_SHIFT & 7;
+	}
+
+	/**
+	 * @param move
+	 * @return the (first) target, meaningless for a pass
+	 */
+	public static int target(int move) {
+		return move & TARGET_MASK;
+	}
+
+	/**
+	 * @param move
+	 *            A double move
+	 * @return ordinal of the second ticket
+	 */
+	public static int ticket2(int move) {
+		return move >>> TICKET2_SHIFT & 7;
+	}
+
+	/**
+	 * @param move
+	 *            A double move
+	 * @return the second target
+	 */
+	public static int target2(int move) {
+		return move >>> TARGET2_SHIFT & TARGET_MASK;
+	}
+
+	/**
+	 * @param move
+	 * @return the first move of a double move, the move itself otherwise
+	 */
+	public static int first(int move) {
+		if (!isDouble(move))
+			return move;
+		return TICKET << KIND_SHIFT | move & (7 << COLOUR_SHIFT | 7 << TICKET1_SHIFT | TARGET_MASK);
+	}
+
+	/**
+	 * @param move
+	 *            A double move
+	 * @return its second move
+	 */
+	public static int second(int move) {
+		return ticket(colour(move), ticket2(move), target2(move));
+	}
+
+	/**
+	 * @param move
+	 * @return the location the player ends up at, meaningless for a pass
+	 */
+	public static int finalTarget(int move) {
+		return isDouble(move) ? target2(move) : target(move);
+	}
+
+	/**
+	 * @param move
+	 * @return the packed form of move
+	 */
+	public static int encode(Move move) {
+		int colour = move.colour.ordinal();
+		if (move instanceof MoveTicket) {
+			MoveTicket mt = (MoveTicket) move;
+			return ticket(colour, mt.ticket.ordinal(), mt.target);
+		}
+		if (move instanceof MoveDouble) {
+			MoveDouble md = (MoveDouble) move;
+			return doubleMove(ticket(colour, md.move1.ticket.ordinal(), md.move1.target), md.move2.ticket.ordinal(),
+					md.move2.target);
+		}
+		return pass(colour);
+	}
+
+	/**
+	 * @param move
+	 *            A packed move, not NONE
+	 * @return the Move it stands for
+	 */
+	public static Move decode(int move) {
+		Colour colour = colours[colour(move)];
+		switch (kind(move)) {
+		case TICKET:
+			return MoveTicket.instance(colour, tickets[ticket(move)], target(move));
+		case DOUBLE:
+			return MoveDouble.instance(colour, MoveTicket.instance(colour, tickets[ticket(move)], target(move)),
+					MoveTicket.instance(colour, tickets[ticket2(move)], target2(move)));
+		case PASS:
+			return MovePass.instance(colour);
+		default:
+			throw new IllegalArgumentException("Not a move: " + move);
+		}
+	}
+
+	/**
+	 * @param move
+	 * @return a readable form of move
+	 */
+	public static String toString(int move) {
+		if (move == NONE)
+			return "none";
+		return decode(move).toString();
+	}
+
+}
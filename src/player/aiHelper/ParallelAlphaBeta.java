@@ -0,0 +1,110 @@
+package player.aiHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import scotlandyard.Colour;
+
+/**
+ * AlphaBeta that splits the root across all the available cores (Young
+ * Brothers Wait). The best move of the previous iteration is searched first
+ * on the calling thread to get a good alpha; the remaining root moves are
+ * then searched concurrently on a ForkJoinPool. Every task starts from the
+ * best alpha found so far by any thread and publishes its own result, so
+ * later tasks get tighter windows. The transposition table is shared.
+ */
+public class ParallelAlphaBeta extends AlphaBeta {
+
+	private final ForkJoinPool pool;
+	// Best root value found so far in the current iteration, as double bits
+	private final AtomicLong alpha;
+
+	public ParallelAlphaBeta(AINode root, Colour maxColour) {
+		super(root, maxColour);
+		pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		alpha = new AtomicLong();
+	}
+
+	private double getAlpha() {
+		return Double.longBitsToDouble(alpha.get());
+	}
+
+	/**
+	 * Raises the shared alpha to value if it is higher
+	 */
+	private void raiseAlpha(double value) {
+		long current;
+		do {
+			current = alpha.get();
+			if (Double.longBitsToDouble(current) >= value)
+				return;
+		} while (!alpha.compareAndSet(current, Double.doubleToLongBits(value)));
+	}
+
+	/**
+	 * Run the algorithm once, creating a tree for the current max depth, with
+	 * the root moves searched in parallel.
+	 *
+	 * @param initialState
+	 *            The initial state
+	 * @return A best move
+	 */
+	@Override
+	int decision(AINode initialState) {
+		List<AINode> successors = successors(initialState);
+		if (successors.isEmpty())
+			return PackedMove.NONE;
+
+		double[] values = new double[successors.size()];
+		boolean[] searched = new boolean[successors.size()];
+		int depth = getMaxDepth();
+
+		// The eldest brother is searched alone
+		SearchContext context = context();
+		context.maxDepth = depth;
+		values[0] = value(successors.get(0), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, context);
+		searched[0] = !isStop();
+		alpha.set(Double.doubleToLongBits(values[0]));
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		for (int i = 1; i < successors.size(); i++) {
+			final int index = i;
+			tasks.add(pool.submit(() -> {
+				SearchContext taskContext = context();
+				taskContext.maxDepth = depth;
+				values[index] = value(successors.get(index), getAlpha(), Double.POSITIVE_INFINITY, taskContext);
+				searched[index] = !isStop();
+				raiseAlpha(values[index]);
+			}));
+		}
+		for (ForkJoinTask<?> task : tasks)
+			task.join();
+
+		double best = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < successors.size(); i++) {
+			AINode s = successors.get(i);
+			// The others only count if the eldest brother was searched
+			if (searched[0] && searched[i])
+				rootSearched(s, values[i]);
+			best = Math.max(best, values[i]);
+			s.setScore(values[i]);
+			storeValue(s, values[i]); //Store it for the next iteration
+		}
+
+		if (isStop())
+			return PackedMove.NONE;
+
+		context.completedDepth = depth;
+		iterationFinished(depth);
+		return MoveFilterer.chooseSafestMove(getSuccessors(), best);
+	}
+
+	@Override
+	void finish() {
+		pool.shutdownNow();
+	}
+
+}
@@ -0,0 +1,157 @@
+package player.aiHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import scotlandyard.Colour;
+import scotlandyard.Graph;
+import scotlandyard.Route;
+import scotlandyard.ScotlandYardGraphReader;
+
+/**
+ *
+ * Times the evaluation of MrX's states: MyAIGameState.evaluate() on its own,
+ * then score() with an empty and with a filled score cache. The states are
+ * the different ones reached by random descents of the search tree from
+ * random positions, and all three are timed on the same states after a
+ * warm-up pass. Run by the benchmark target of build.xml: ant benchmark
+ * -Dbenchmark=ScoreBenchmark -Dbenchmark.args="resources/graph.txt positions"
+ *
+ */
+public class ScoreBenchmark {
+
+	private static final int DESCENTS = 500;
+	private static final int DESCENT_PLIES = 12;
+	private static final int RUNS = 5;
+
+	// Indices of the results of time()
+	private static final int STATES = 0;
+	private static final int EVALUATE = 1;
+	private static final int COLD = 2;
+	private static final int WARM = 3;
+
+	// Sum of the scores, so the scoring cannot be optimised away
+	private static double check;
+
+	private ScoreBenchmark() {
+	}
+
+	/**
+	 * @param args
+	 *            The graph file, optionally the number of positions (default
+	 *            20)
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		Graph<Integer, Route> graph = new ScotlandYardGraphReader().readGraph(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		List<BenchmarkPositions.Position> positions = BenchmarkPositions.positions(graph, count, 1, Colour.Black);
+		List<int[][]> descents = new ArrayList<int[][]>();
+		for (BenchmarkPositions.Position p : positions) {
+			MyAIGameState root = (MyAIGameState) MyAIGameState.createGameState(null, p.view, p.mrXLocation, graph);
+			descents.add(descents(root, new Random(p.mrXLocation)));
+		}
+
+		// The first pass only warms up the compiler
+		long[] times = null;
+		for (int pass = 0; pass < 2; pass++)
+			times = time(graph, positions, descents);
+		System.out.println(times[STATES] + " different states from " + count + " positions, checksum " + check);
+		System.out.println("evaluate(): " + perSecond(times[STATES], times[EVALUATE]) + " per second");
+		System.out.println("score(), empty cache: " + perSecond(times[STATES], times[COLD]) + " per second");
+		System.out.println("score(), filled cache: " + perSecond(times[STATES], times[WARM]) + " per second");
+	}
+
+	/**
+	 * Times the three ways of scoring on the same states, in the same loop.
+	 * Each run scores new copies of the states, which share a new and empty
+	 * cache, and the states are all different, so every score() on the empty
+	 * cache is a miss that calls evaluate().
+	 *
+	 * @return the number of states, then the best times of evaluate(),
+	 *         score() with an empty cache and score() with a filled cache, in
+	 *         nanoseconds
+	 */
+	private static long[] time(Graph<Integer, Route> graph, List<BenchmarkPositions.Position> positions,
+			List<int[][]> descents) {
+		long[] times = new long[4];
+		for (int i = 0; i < positions.size(); i++) {
+			BenchmarkPositions.Position p = positions.get(i);
+			long[] best = { 0, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+			for (int run = 0; run < RUNS; run++) {
+				MyAIGameState root = (MyAIGameState) MyAIGameState.createGameState(null, p.view, p.mrXLocation,
+						graph);
+				List<MyAIGameState> reached = reached(root, descents.get(i));
+				best[STATES] = reached.size();
+				long start = System.nanoTime();
+				for (MyAIGameState state : reached)
+					check = check + state.evaluate();
+				best[EVALUATE] = Math.min(best[EVALUATE], System.nanoTime() - start);
+				start = System.nanoTime();
+				for (MyAIGameState state : reached)
+					check = check + state.score();
+				best[COLD] = Math.min(best[COLD], System.nanoTime() - start);
+				start = System.nanoTime();
+				for (MyAIGameState state : reached)
+					check = check + state.score();
+				best[WARM] = Math.min(best[WARM], System.nanoTime() - start);
+			}
+			for (int t = 0; t < times.length; t++)
+				times[t] = times[t] + best[t];
+		}
+		return times;
+	}
+
+	/**
+	 * @return random move sequences from root, each ending at the end of the
+	 *         game or after DESCENT_PLIES moves
+	 */
+	private static int[][] descents(MyAIGameState root, Random random) {
+		int[][] descents = new int[DESCENTS][];
+		MoveList moves = new MoveList();
+		for (int d = 0; d < DESCENTS; d++) {
+			int[] descent = new int[DESCENT_PLIES];
+			int played = 0;
+			while (played < DESCENT_PLIES && !root.isGameOver()) {
+				MoveFilterer.filteredMoves(root, moves);
+				if (moves.isEmpty())
+					break;
+				descent[played] = moves.get(random.nextInt(moves.size()));
+				root.apply(descent[played++]);
+			}
+			for (int i = 0; i < played; i++)
+				root.undo();
+			descents[d] = Arrays.copyOf(descent, played);
+		}
+		return descents;
+	}
+
+	/**
+	 * @return a copy of each different state reached by the descents, sharing
+	 *         the score cache of root
+	 */
+	private static List<MyAIGameState> reached(MyAIGameState root, int[][] descents) {
+		List<MyAIGameState> states = new ArrayList<MyAIGameState>();
+		Set<Long> keys = new HashSet<Long>();
+		for (int[] descent : descents) {
+			for (int move : descent) {
+				root.apply(move);
+				if (keys.add(root.getKey()))
+					states.add((MyAIGameState) root.copy(PackedMove.NONE));
+			}
+			for (int i = 0; i < descent.length; i++)
+				root.undo();
+		}
+		return states;
+	}
+
+	private static long perSecond(long count, long nanos) {
+		return count * 1000000000L / Math.max(1, nanos);
+	}
+
+}
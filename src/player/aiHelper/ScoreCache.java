@@ -0,0 +1,61 @@
+package player.aiHelper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size cache of evaluated positions, indexed by the Zobrist key of the
+ * position. The search scores the same position several times: when ordering
+ * the moves of its parent, as a leaf and again when the root move is chosen,
+ * and transpositions reach it through different move orders. Only positions
+ * whose score depends on nothing but the key may be cached.
+ *
+ * Like the TranspositionTable it is lock-free: the score is stored next to
+ * the key XORed with it, and an entry whose two halves disagree reads as a
+ * miss.
+ */
+public class ScoreCache {
+
+	private final int mask;
+	private final AtomicLongArray keys; // key ^ score bits
+	private final AtomicLongArray scores;
+
+	/**
+	 * @param bits
+	 *            The cache holds 2^bits entries
+	 */
+	public ScoreCache(int bits) {
+		int size = 1 << bits;
+		mask = size - 1;
+		keys = new AtomicLongArray(size);
+		scores = new AtomicLongArray(size);
+	}
+
+	/**
+	 * @param key
+	 *            Zobrist key of the position
+	 * @return the cached score of the position, or NaN if it is not cached
+	 */
+	public double probe(long key) {
+		int slot = (int) key & mask;
+		long stored = scores.get(slot);
+		if (stored == 0 || (keys.get(slot) ^ stored) != key)
+			return Double.NaN;
+		return Double.longBitsToDouble(stored);
+	}
+
+	/**
+	 * Stores the score of a position, replacing whatever was in its slot. A
+	 * score of 0 is not cached.
+	 *
+	 * @param key
+	 *            Zobrist key of the position
+	 * @param score
+	 */
+	public void store(long key, double score) {
+		int slot = (int) key & mask;
+		long bits = Double.doubleToRawLongBits(score);
+		keys.set(slot, key ^ bits);
+		scores.set(slot, bits);
+	}
+
+}
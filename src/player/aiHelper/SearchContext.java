@@ -0,0 +1,110 @@
+package player.aiHelper;
+
+import java.util.Arrays;
+
+import scotlandyard.Ticket;
+
+/**
+ * Per-thread data of a search: scratch space for transposition table lookups
+ * and move generation, the move ordering heuristics, and statistics. A context is only ever used by the thread that created it,
+ * so nothing in it needs synchronisation.
+ */
+class SearchContext {
+
+	private static final int DOUBLE = Ticket.Double.ordinal();
+
+	final String name;
+	final TranspositionTable.Entry entry;
+	// Moves of the node being searched at each depth
+	private MoveList[] moveLists;
+	// Two killer moves per depth: the last moves that caused a cutoff there
+	private int[] killers;
+	// Cutoffs caused by each move, weighted by the depth left, indexed by
+	// historyIndex(move)
+	private final long[] history;
+	long nodes;
+	// Nodes searched below the horizon by the quiescence search
+	long quiescenceNodes;
+	// Depth at which this thread's tree is cut
+	int maxDepth;
+	// Deepest iteration this thread has completed
+	int completedDepth;
+
+	SearchContext(String name) {
+		this.name = name;
+		this.entry = new TranspositionTable.Entry();
+		this.moveLists = new MoveList[0];
+		this.killers = new int[0];
+		this.history = new long[1 << 15];
+		this.nodes = 0;
+		this.quiescenceNodes = 0;
+		this.maxDepth = 0;
+		this.completedDepth = 0;
+	}
+
+	/**
+	 * @param depth
+	 * @return the move list of the node at depth, reused by every node at that
+	 *         depth
+	 */
+	MoveList moves(int depth) {
+		if (depth >= moveLists.length) {
+			moveLists = Arrays.copyOf(moveLists, depth + 8);
+			for (int i = 0; i < moveLists.length; i++) {
+				if (moveLists[i] == null)
+					moveLists[i] = new MoveList();
+			}
+		}
+		return moveLists[depth];
+	}
+
+	/**
+	 * @param depth
+	 * @param slot
+	 *            0 for the most recent killer, 1 for the one before
+	 * @return a killer move at depth, PackedMove.NONE if there is none
+	 */
+	int killer(int depth, int slot) {
+		int index = 2 * depth + slot;
+		return index < killers.length ? killers[index] : PackedMove.NONE;
+	}
+
+	/**
+	 * @param move
+	 * @return the history score of move, higher for moves that caused more
+	 *         cutoffs, deeper in the tree
+	 */
+	long history(int move) {
+		return history[historyIndex(move)];
+	}
+
+	/**
+	 * Records a move that caused a cutoff: it becomes the first killer at its
+	 * depth and its history score grows with the square of the depth left.
+	 *
+	 * @param depth
+	 *            Depth of the node
+	 * @param move
+	 * @param depthLeft
+	 *            Depth the node was searched to
+	 */
+	void cutoff(int depth, int move, int depthLeft) {
+		if (2 * depth + 1 >= killers.length)
+			killers = Arrays.copyOf(killers, 2 * depth + 16);
+		if (killers[2 * depth] != move) {
+			killers[2 * depth + 1] = killers[2 * depth];
+			killers[2 * depth] = move;
+		}
+		history[historyIndex(move)] += depthLeft * depthLeft;
+	}
+
+	/**
+	 * Index of a move in the history table, by player, ticket and the
+	 * location the move ends at. Double moves count as a Double ticket.
+	 */
+	private static int historyIndex(int move) {
+		int ticket = PackedMove.isDouble(move) ? DOUBLE : PackedMove.ticket(move);
+		return PackedMove.colour(move) << 12 | ticket << 9 | PackedMove.finalTarget(move);
+	}
+
+}
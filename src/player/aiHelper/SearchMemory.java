@@ -0,0 +1,28 @@
+package player.aiHelper;
+
+/**
+ * What a player keeps from one of its searches to the next: the tree of its
+ * last Monte Carlo search and the position it was searched from, see
+ * MonteCarloTreeSearch. Each player owns its own, so games running in the
+ * same JVM never share search state. Only used by one search at a time.
+ */
+public final class SearchMemory {
+
+	NodePool tree;
+	AbstractGameState root;
+
+	/**
+	 * Creates an empty memory
+	 */
+	public SearchMemory() {
+	}
+
+	/**
+	 * Forgets the last tree, so its nodes can be collected
+	 */
+	void clear() {
+		tree = null;
+		root = null;
+	}
+
+}
@@ -0,0 +1,591 @@
+package player.aiHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import scotlandyard.Colour;
+import scotlandyard.Move;
+import scotlandyard.ScotlandYardView;
+import scotlandyard.Ticket;
+
+/**
+ * Packed representation of the game used by the search. Locations and ticket
+ * counts of all the players live in two small int arrays, so copying a state
+ * is two array clones instead of building a whole ScotlandYardModel. It
+ * implements the rules needed by the search: move generation, applying and
+ * undoing moves and deciding the winners.
+ *
+ * Player 0 is always MrX, the rest are the detectives in the order of play.
+ * Every state carries a Zobrist key that is updated as moves are applied, so
+ * identical positions reached by different move orders share the same key.
+ *
+ * The locations of the detectives are also kept as a bitset, so whether a
+ * player can move at all is answered with the per-ticket target bitsets of
+ * the MrXTracker, a few word operations per ticket. The answer for all the
+ * players is cached until the position changes.
+ */
+public final class SearchState {
+
+	static final int MRX = 0;
+	static final int TICKETS = Ticket.values().length;
+
+	private static final int TAXI = Ticket.Taxi.ordinal();
+	private static final int BUS = Ticket.Bus.ordinal();
+	private static final int UNDERGROUND = Ticket.Underground.ordinal();
+	private static final int SECRET = Ticket.Secret.ordinal();
+	private static final int DOUBLE = Ticket.Double.ordinal();
+	private static final Ticket[] ticketValues = Ticket.values();
+
+	/**
+	 * Size of a record in the undo stack: player, location before the move,
+	 * first ticket, second ticket (-1 if none), round, MrX's last known
+	 * location and current player before the move.
+	 */
+	private static final int UNDO_RECORD = 7;
+
+	private final CompactGraph graph;
+	private final MrXTracker tracker;
+	private final Zobrist zobrist;
+	private final Colour[] players;
+	// Index of each player by the ordinal of its colour
+	private final int[] playerIndex;
+	private final List<Colour> playerList;
+	private final List<Boolean> rounds;
+
+	private final int[] locations;
+	private final int[] tickets;
+	private final LocationSet detectiveLocations;
+	private int round;
+	private int current;
+	private int mrXLastKnownLocation;
+	private long key;
+	// Bit p is set if player p can move, valid if movableKnown
+	private int movable;
+	private boolean movableKnown;
+
+	private int[] undoStack;
+	private long[] keyStack;
+	private int undoSize;
+
+	private SearchState(CompactGraph graph, MrXTracker tracker, Zobrist zobrist, Colour[] players,
+			List<Colour> playerList, List<Boolean> rounds, int[] locations, int[] tickets) {
+		this.graph = graph;
+		this.tracker = tracker;
+		this.zobrist = zobrist;
+		this.players = players;
+		this.playerIndex = new int[Colour.values().length];
+		for (int p = 0; p < players.length; p++)
+			playerIndex[players[p].ordinal()] = p;
+		this.playerList = playerList;
+		this.rounds = rounds;
+		this.locations = locations;
+		this.tickets = tickets;
+		detectiveLocations = tracker.emptySet();
+		for (int p = 1; p < players.length; p++)
+			detectiveLocations.add(locations[p]);
+		movableKnown = false;
+		undoStack = new int[UNDO_RECORD * 8];
+		keyStack = new long[8];
+		undoSize = 0;
+	}
+
+	/**
+	 * Reads the state of the game from a view.
+	 *
+	 * @param view
+	 *            View of the game
+	 * @param mrXLocation
+	 *            The location to use for MrX
+	 * @param distances
+	 *            The distance table of the board
+	 * @return a new state
+	 */
+	public static SearchState fromView(ScotlandYardView view, int mrXLocation, DistanceTable distances) {
+		CompactGraph graph = distances.getCompactGraph();
+		List<Colour> order = new ArrayList<Colour>(view.getPlayers());
+		if (order.get(MRX) != Colour.Black)
+			throw new IllegalArgumentException("MrX must be the first player");
+		if (order.size() > Zobrist.MAX_PLAYERS)
+			throw new IllegalArgumentException("Too many players: " + order.size());
+		Colour[] players = order.toArray(new Colour[order.size()]);
+		int[] locations = new int[players.length];
+		int[] tickets = new int[players.length * TICKETS];
+		for (int p = 0; p < players.length; p++) {
+			locations[p] = p == MRX ? mrXLocation : view.getPlayerLocation(players[p]);
+			for (Ticket ticket : ticketValues)
+				tickets[p * TICKETS + ticket.ordinal()] = view.getPlayerTickets(players[p], ticket);
+		}
+		SearchState state = new SearchState(graph, distances.getMrXTracker(), new Zobrist(graph.size()), players,
+				Collections.unmodifiableList(order), view.getRounds(), locations, tickets);
+		state.current = order.indexOf(view.getCurrentPlayer());
+		state.round = view.getRound();
+		state.mrXLastKnownLocation = view.getPlayerLocation(Colour.Black);
+		state.key = state.computeKey();
+		return state;
+	}
+
+	private long computeKey() {
+		long key = zobrist.round(round) ^ zobrist.turn(current);
+		for (int p = 0; p < players.length; p++) {
+			key ^= zobrist.location(p, locations[p]);
+			for (int t = 0; t < TICKETS; t++)
+				key ^= zobrist.tickets(p, t, tickets[p * TICKETS + t]);
+		}
+		return key;
+	}
+
+	/**
+	 * @return an independent copy of this state with an empty undo stack
+	 */
+	public SearchState copy() {
+		SearchState copy = new SearchState(graph, tracker, zobrist, players, playerList, rounds, locations.clone(),
+				tickets.clone());
+		copy.round = round;
+		copy.current = current;
+		copy.mrXLastKnownLocation = mrXLastKnownLocation;
+		copy.key = key;
+		return copy;
+	}
+
+	/**
+	 * @return the Zobrist key of the position: player locations, ticket
+	 *         counts, round and player to move
+	 */
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * @param colour
+	 * @return the index of the player with the given colour
+	 */
+	public int indexOf(Colour colour) {
+		for (int p = 0; p < players.length; p++) {
+			if (players[p] == colour)
+				return p;
+		}
+		throw new IllegalArgumentException("No player with colour " + colour);
+	}
+
+	public List<Colour> getPlayers() {
+		return playerList;
+	}
+
+	public int getPlayerCount() {
+		return players.length;
+	}
+
+	public Colour getColour(int player) {
+		return players[player];
+	}
+
+	public Colour getCurrentPlayer() {
+		return players[current];
+	}
+
+	public int getCurrentIndex() {
+		return current;
+	}
+
+	public int getRound() {
+		return round;
+	}
+
+	public List<Boolean> getRounds() {
+		return rounds;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param player
+	 * @return real location of player
+	 */
+	public int getLocation(int player) {
+		return locations[player];
+	}
+
+	public void setLocation(int player, int location) {
+		key ^= zobrist.location(player, locations[player]) ^ zobrist.location(player, location);
+		placePlayer(player, location);
+	}
+
+	/**
+	 * Moves a player without touching the key, keeping the detectives'
+	 * bitset up to date.
+	 */
+	private void placePlayer(int player, int location) {
+		int previous = locations[player];
+		locations[player] = location;
+		movableKnown = false;
+		if (player != MRX && previous != location) {
+			detectiveLocations.add(location);
+			if (!isDetectiveAt(previous))
+				detectiveLocations.remove(previous);
+		}
+	}
+
+	private void addTickets(int player, int ticket, int count) {
+		movableKnown = false;
+		int index = player * TICKETS + ticket;
+		key ^= zobrist.tickets(player, ticket, tickets[index]) ^ zobrist.tickets(player, ticket, tickets[index] + count);
+		tickets[index] += count;
+	}
+
+	private void setCurrent(int player) {
+		key ^= zobrist.turn(current) ^ zobrist.turn(player);
+		current = player;
+	}
+
+	public int getMrXLastKnownLocation() {
+		return mrXLastKnownLocation;
+	}
+
+	public int getTickets(int player, Ticket ticket) {
+		return tickets[player * TICKETS + ticket.ordinal()];
+	}
+
+	/**
+	 * Pass the turn to the next player.
+	 */
+	public void nextPlayer() {
+		setCurrent((current + 1) % players.length);
+	}
+
+	/**
+	 * @param colour
+	 *            The player who moves next
+	 */
+	public void setCurrentPlayer(Colour colour) {
+		setCurrent(indexOf(colour));
+	}
+
+	/**
+	 * @param location
+	 * @return true if a detective stands on location
+	 */
+	public boolean isDetectiveAt(int location) {
+		for (int p = 1; p < players.length; p++) {
+			if (locations[p] == location)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param route
+	 *            Transport bitmask of an edge
+	 * @return the normal ticket needed for the edge, or -1 for boats
+	 */
+	private static int ticketFor(int route) {
+		if (route == CompactGraph.TAXI)
+			return TAXI;
+		if (route == CompactGraph.BUS)
+			return BUS;
+		if (route == CompactGraph.UNDERGROUND)
+			return UNDERGROUND;
+		return -1;
+	}
+
+	/**
+	 * Generates all the valid moves of a player. Detectives that cannot move
+	 * get a single MovePass, MrX gets an empty set.
+	 *
+	 * @param player
+	 * @return the valid moves
+	 */
+	public Set<Move> validMoves(int player) {
+		MoveList list = new MoveList();
+		generateMoves(player, list);
+		if (player == MRX)
+			addDoubleMoves(list, list.size(), true, true, -1);
+		Set<Move> moves = new HashSet<Move>();
+		for (int i = 0; i < list.size(); i++)
+			moves.add(PackedMove.decode(list.get(i)));
+		return moves;
+	}
+
+	/**
+	 * Generates the valid single moves of a player into moves, packed, each
+	 * move once. Detectives that cannot move get a single pass. MrX's double
+	 * moves are left to addDoubleMoves, so they are only built when they are
+	 * going to be searched.
+	 *
+	 * @param player
+	 * @param moves
+	 *            Cleared and filled with the moves
+	 */
+	void generateMoves(int player, MoveList moves) {
+		moves.clear();
+		int colour = players[player].ordinal();
+		int location = locations[player];
+		int base = player * TICKETS;
+		for (int e = graph.edgesStart(location); e < graph.edgesEnd(location); e++) {
+			int target = graph.target(e);
+			if (detectiveLocations.contains(target) && !(player != MRX && locations[player] == target))
+				continue;
+			int ticket = ticketFor(graph.route(e));
+			if (ticket >= 0 && tickets[base + ticket] > 0)
+				moves.add(PackedMove.ticket(colour, ticket, target));
+			if (player == MRX && tickets[base + SECRET] > 0 && isFirstEdgeTo(location, e, target))
+				moves.add(PackedMove.ticket(colour, SECRET, target));
+		}
+		if (player != MRX && moves.isEmpty())
+			moves.add(PackedMove.pass(colour));
+	}
+
+	/**
+	 * Appends MrX's double moves that start with one of the first singles
+	 * moves of the list.
+	 *
+	 * @param moves
+	 *            MrX's single moves, as generated by generateMoves
+	 * @param singles
+	 *            Number of single moves at the start of the list
+	 * @param secretFirst
+	 *            Whether double moves may start with a secret ticket
+	 * @param otherFirst
+	 *            Whether double moves may start with any other ticket
+	 * @param excluded
+	 *            A location the double moves may not end at, or -1
+	 */
+	void addDoubleMoves(MoveList moves, int singles, boolean secretFirst, boolean otherFirst, int excluded) {
+		if (tickets[DOUBLE] <= 0 || round + 2 >= rounds.size())
+			return;
+		for (int i = 0; i < singles; i++) {
+			int first = moves.get(i);
+			int used = PackedMove.ticket(first);
+			if (used == SECRET ? !secretFirst : !otherFirst)
+				continue;
+			int from = PackedMove.target(first);
+			for (int e = graph.edgesStart(from); e < graph.edgesEnd(from); e++) {
+				int target = graph.target(e);
+				if (target == excluded || detectiveLocations.contains(target))
+					continue;
+				int ticket = ticketFor(graph.route(e));
+				if (ticket >= 0 && tickets[ticket] - (ticket == used ? 1 : 0) > 0)
+					moves.add(PackedMove.doubleMove(first, ticket, target));
+				if (tickets[SECRET] - (SECRET == used ? 1 : 0) > 0 && isFirstEdgeTo(from, e, target))
+					moves.add(PackedMove.doubleMove(first, SECRET, target));
+			}
+		}
+	}
+
+	/**
+	 * @return true if edge is the first edge of location that leads to target
+	 */
+	private boolean isFirstEdgeTo(int location, int edge, int target) {
+		for (int e = graph.edgesStart(location); e < edge; e++) {
+			if (graph.target(e) == target)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the player has at least one move other than a pass. The
+	 * answer is cached with the answers of the other players until the
+	 * position changes.
+	 *
+	 * @param player
+	 * @return true if the player can move
+	 */
+	public boolean canMove(int player) {
+		if (!movableKnown) {
+			movable = 0;
+			for (int p = 0; p < players.length; p++) {
+				if (hasMove(p))
+					movable |= 1 << p;
+			}
+			movableKnown = true;
+		}
+		return (movable & 1 << player) != 0;
+	}
+
+	/**
+	 * Looks for a ticket the player holds that reaches a location free of
+	 * detectives, stopping at the first one found. A detective's own location
+	 * is never one of its targets, so it does not block it.
+	 */
+	private boolean hasMove(int player) {
+		int location = locations[player];
+		int base = player * TICKETS;
+		if (player == MRX && tickets[base + SECRET] > 0)
+			return tracker.canReach(location, SECRET, detectiveLocations);
+		return tickets[base + TAXI] > 0 && tracker.canReach(location, TAXI, detectiveLocations)
+				|| tickets[base + BUS] > 0 && tracker.canReach(location, BUS, detectiveLocations)
+				|| tickets[base + UNDERGROUND] > 0 && tracker.canReach(location, UNDERGROUND, detectiveLocations);
+	}
+
+	/**
+	 * Plays a move, remembering enough to take it back with undo(). The
+	 * current player is left unchanged.
+	 *
+	 * @param move
+	 */
+	public void apply(Move move) {
+		apply(PackedMove.encode(move));
+	}
+
+	/**
+	 * Plays a packed move, see apply(Move).
+	 *
+	 * @param move
+	 *            A PackedMove
+	 */
+	public void apply(int move) {
+		int player = playerIndex[PackedMove.colour(move)];
+		if (undoSize + UNDO_RECORD > undoStack.length) {
+			undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+			keyStack = Arrays.copyOf(keyStack, keyStack.length * 2);
+		}
+		keyStack[undoSize / UNDO_RECORD] = key;
+		int[] record = undoStack;
+		int r = undoSize;
+		record[r] = player;
+		record[r + 1] = locations[player];
+		record[r + 2] = -1;
+		record[r + 3] = -1;
+		record[r + 4] = round;
+		record[r + 5] = mrXLastKnownLocation;
+		record[r + 6] = current;
+		undoSize += UNDO_RECORD;
+
+		if (PackedMove.isPass(move))
+			return;
+		int first = PackedMove.ticket(move);
+		record[r + 2] = first;
+		if (PackedMove.isDouble(move)) {
+			int second = PackedMove.ticket2(move);
+			record[r + 3] = second;
+			addTickets(MRX, DOUBLE, -1);
+			moveTo(MRX, first, PackedMove.target(move));
+			moveTo(MRX, second, PackedMove.target2(move));
+		} else {
+			moveTo(player, first, PackedMove.target(move));
+		}
+	}
+
+	private void moveTo(int player, int ticket, int target) {
+		setLocation(player, target);
+		addTickets(player, ticket, -1);
+		if (player == MRX) {
+			key ^= zobrist.round(round) ^ zobrist.round(round + 1);
+			round++;
+			if (round < rounds.size() && rounds.get(round))
+				mrXLastKnownLocation = target;
+		} else {
+			addTickets(MRX, ticket, 1); // Detective tickets are given to MrX
+		}
+	}
+
+	/**
+	 * Takes back the last move played with apply(), restoring the current
+	 * player as it was before that move.
+	 */
+	public void undo() {
+		undoSize -= UNDO_RECORD;
+		int r = undoSize;
+		int player = undoStack[r];
+		int first = undoStack[r + 2];
+		int second = undoStack[r + 3];
+		if (first >= 0) {
+			tickets[player * TICKETS + first]++;
+			if (player != MRX)
+				tickets[first]--;
+		}
+		if (second >= 0) {
+			tickets[second]++;
+			tickets[DOUBLE]++;
+		}
+		placePlayer(player, undoStack[r + 1]);
+		round = undoStack[r + 4];
+		mrXLastKnownLocation = undoStack[r + 5];
+		current = undoStack[r + 6];
+		key = keyStack[r / UNDO_RECORD];
+	}
+
+	/**
+	 * @return true if a detective has caught MrX
+	 */
+	public boolean isMrXCaught() {
+		return isDetectiveAt(locations[MRX]);
+	}
+
+	/**
+	 * @return true if a detective can move onto MrX's location with one of
+	 *         its tickets
+	 */
+	public boolean isMrXThreatened() {
+		int location = locations[MRX];
+		for (int e = graph.edgesStart(location); e < graph.edgesEnd(location); e++) {
+			int target = graph.target(e);
+			int ticket = ticketFor(graph.route(e));
+			if (ticket < 0 || !detectiveLocations.contains(target))
+				continue;
+			for (int p = 1; p < players.length; p++) {
+				if (locations[p] == target && tickets[p * TICKETS + ticket] > 0)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean areDetectivesStuck() {
+		for (int p = 1; p < players.length; p++) {
+			if (canMove(p))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the set of winners, empty if the game is not over
+	 */
+	public Set<Colour> getWinningPlayers() {
+		Set<Colour> winners = new HashSet<Colour>();
+		if (isMrXCaught() || current == MRX && !canMove(MRX)) {
+			for (int p = 1; p < players.length; p++)
+				winners.add(players[p]);
+		} else if (round >= rounds.size() - 1 && current == MRX || areDetectivesStuck()) {
+			winners.add(Colour.Black);
+		}
+		return winners;
+	}
+
+	public boolean isGameOver() {
+		return isMrXCaught() || current == MRX && !canMove(MRX) || round >= rounds.size() - 1 && current == MRX
+				|| areDetectivesStuck();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 5;
+		int result = 1;
+		for (int location : locations)
+			result = prime * result + location;
+		result = prime * result + round;
+		return result;
+	}
+
+	/**
+	 * Two states are equal when the players stand on the same locations in the
+	 * same round.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SearchState))
+			return false;
+		SearchState other = (SearchState) obj;
+		return round == other.round && Arrays.equals(locations, other.locations);
+	}
+
+}
@@ -0,0 +1,82 @@
+package player.aiHelper;
+
+/**
+ * Decides how long the iterative deepening search may run. The search gets a
+ * fixed share of the judge's per-move budget as a hard deadline, and a new
+ * iteration is only started if it is predicted to finish before it. The cost
+ * of the next iteration is predicted from the effective branching factor,
+ * i.e. the ratio between the durations of the last two iterations.
+ */
+public class TimeManager {
+
+	/**
+	 * Time the judge gives each player to make a move, see JudgeService
+	 */
+	public static final long JUDGE_MOVE_TIME = 30000;
+
+	/**
+	 * Share of the budget the search may use, the rest is left for the
+	 * network and the game itself.
+	 */
+	private static final double MAX_SHARE = 0.5;
+
+	private final long start;
+	private final long deadline;
+	private long iterationStart;
+	private long lastIteration;
+	private long previousIteration;
+
+	/**
+	 * @param budget
+	 *            Time in milliseconds allowed for the whole move
+	 */
+	public TimeManager(long budget) {
+		start = System.currentTimeMillis();
+		deadline = start + (long) (budget * MAX_SHARE);
+		iterationStart = start;
+		lastIteration = 0;
+		previousIteration = 0;
+	}
+
+	/**
+	 * @return milliseconds left before the hard deadline, at least 0
+	 */
+	public long remaining() {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * @return milliseconds since the search started
+	 */
+	public long elapsed() {
+		return System.currentTimeMillis() - start;
+	}
+
+	public void iterationStarted() {
+		iterationStart = System.currentTimeMillis();
+	}
+
+	public void iterationFinished() {
+		previousIteration = lastIteration;
+		lastIteration = Math.max(1, System.currentTimeMillis() - iterationStart);
+	}
+
+	/**
+	 * @return ratio between the durations of the last two iterations, at
+	 *         least 1
+	 */
+	public double branchingFactor() {
+		if (previousIteration == 0)
+			return 1.0;
+		return Math.max(1.0, (double) lastIteration / previousIteration);
+	}
+
+	/**
+	 * @return true if the next iteration is expected to finish before the
+	 *         deadline
+	 */
+	public boolean hasTimeForNextIteration() {
+		return lastIteration * branchingFactor() < remaining();
+	}
+
+}
@@ -0,0 +1,140 @@
+package player.aiHelper;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size hash table of searched positions, indexed by the Zobrist key of
+ * the position. Each entry keeps the value found, whether it is exact or a
+ * bound, the depth it was searched to and the best move. When two positions
+ * map to the same slot the one searched deeper is kept.
+ *
+ * The table is lock-free so any number of search threads can share it. The
+ * depth and bound of an entry are packed in one long and the value is kept
+ * whole as the bits of a double, so a stored value compares exactly against
+ * the bounds of the search. Both are stored next to the key XORed with them;
+ * a reader only accepts an entry whose parts agree, so an entry torn by
+ * concurrent writers reads as a miss. The best move is stored separately,
+ * packed, and is only a hint: the search uses it only if it is one of the
+ * valid moves of the position.
+ */
+public class TranspositionTable {
+
+	public static final byte EXACT = 1;
+	public static final byte LOWER = 2; // value is a lower bound (fail high)
+	public static final byte UPPER = 3; // value is an upper bound (fail low)
+
+	private final int mask;
+	private final AtomicLongArray keys; // key ^ data ^ value bits
+	private final AtomicLongArray data;
+	private final AtomicLongArray values;
+	private final AtomicIntegerArray moves;
+
+	/**
+	 * @param bits
+	 *            The table holds 2^bits entries
+	 */
+	public TranspositionTable(int bits) {
+		int size = 1 << bits;
+		mask = size - 1;
+		keys = new AtomicLongArray(size);
+		data = new AtomicLongArray(size);
+		values = new AtomicLongArray(size);
+		moves = new AtomicIntegerArray(size);
+	}
+
+	/**
+	 * Packs the depth and bound of an entry: 8 bits of depth, then the bound.
+	 * The bound is never 0, so neither is a stored entry.
+	 */
+	private static long pack(int depth, byte bound) {
+		return (depth & 0xFF) | (long) bound << 8;
+	}
+
+	private static int unpackDepth(long data) {
+		return (int) data & 0xFF;
+	}
+
+	private static byte unpackBound(long data) {
+		return (byte) (data >>> 8);
+	}
+
+	/**
+	 * Copies the entry of a position into entry.
+	 *
+	 * @param key
+	 *            Zobrist key of the position
+	 * @param entry
+	 *            Filled with the stored data if the position is found
+	 * @return true if the position is stored
+	 */
+	public boolean probe(long key, Entry entry) {
+		int slot = (int) key & mask;
+		long stored = data.get(slot);
+		long value = values.get(slot);
+		if (stored == 0 || (keys.get(slot) ^ stored ^ value) != key)
+			return false;
+		entry.value = Double.longBitsToDouble(value);
+		entry.depth = unpackDepth(stored);
+		entry.bound = unpackBound(stored);
+		entry.move = moves.get(slot);
+		return true;
+	}
+
+	/**
+	 * Stores a searched position unless its slot holds a different position
+	 * searched deeper.
+	 *
+	 * @param key
+	 *            Zobrist key of the position
+	 * @param depth
+	 *            Remaining depth the position was searched to
+	 * @param value
+	 * @param bound
+	 *            EXACT, LOWER or UPPER
+	 * @param move
+	 *            Best move found, packed, may be PackedMove.NONE
+	 */
+	public void store(long key, int depth, double value, byte bound, int move) {
+		int slot = (int) key & mask;
+		long stored = data.get(slot);
+		boolean samePosition = stored != 0 && (keys.get(slot) ^ stored ^ values.get(slot)) == key;
+		if (!samePosition && stored != 0 && unpackDepth(stored) > depth)
+			return;
+		long packed = pack(depth, bound);
+		long bits = Double.doubleToRawLongBits(value);
+		keys.set(slot, key ^ packed ^ bits);
+		data.set(slot, packed);
+		values.set(slot, bits);
+		if (move != PackedMove.NONE || !samePosition)
+			moves.set(slot, move);
+	}
+
+	/**
+	 * Classifies a value returned by a search with the given window.
+	 *
+	 * @param value
+	 * @param alpha
+	 * @param beta
+	 * @return EXACT, LOWER or UPPER
+	 */
+	public static byte bound(double value, double alpha, double beta) {
+		if (value <= alpha)
+			return UPPER;
+		if (value >= beta)
+			return LOWER;
+		return EXACT;
+	}
+
+	/**
+	 * Data of a stored position, filled by probe(). Each search thread keeps
+	 * its own instance.
+	 */
+	public static final class Entry {
+		public double value;
+		public int depth;
+		public byte bound;
+		public int move;
+	}
+
+}
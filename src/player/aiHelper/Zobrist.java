@@ -0,0 +1,60 @@
+package player.aiHelper;
+
+import java.util.Random;
+
+/**
+ * Random keys for Zobrist hashing of a SearchState. The key of a state is the
+ * XOR of the keys of its features (player locations, ticket counts, round and
+ * player to move), so it can be updated incrementally when a move is played.
+ * The keys are generated from a fixed seed, so states built from different
+ * views of the same game hash consistently.
+ */
+final class Zobrist {
+
+	static final int MAX_PLAYERS = 6;
+	static final int MAX_TICKET_COUNT = 128;
+	static final int MAX_ROUNDS = 64;
+
+	private final int size;
+	private final long[] locationKeys;
+	private final long[] ticketKeys;
+	private final long[] roundKeys;
+	private final long[] turnKeys;
+
+	/**
+	 * @param size
+	 *            Number of locations, see CompactGraph.size()
+	 */
+	Zobrist(int size) {
+		this.size = size;
+		Random random = new Random(0x5C071A4DL);
+		locationKeys = randomKeys(random, MAX_PLAYERS * size);
+		ticketKeys = randomKeys(random, MAX_PLAYERS * SearchState.TICKETS * MAX_TICKET_COUNT);
+		roundKeys = randomKeys(random, MAX_ROUNDS);
+		turnKeys = randomKeys(random, MAX_PLAYERS);
+	}
+
+	private static long[] randomKeys(Random random, int count) {
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++)
+			keys[i] = random.nextLong();
+		return keys;
+	}
+
+	long location(int player, int location) {
+		return locationKeys[player * size + location];
+	}
+
+	long tickets(int player, int ticket, int count) {
+		return ticketKeys[(player * SearchState.TICKETS + ticket) * MAX_TICKET_COUNT + (count & (MAX_TICKET_COUNT - 1))];
+	}
+
+	long round(int round) {
+		return roundKeys[round & (MAX_ROUNDS - 1)];
+	}
+
+	long turn(int player) {
+		return turnKeys[player];
+	}
+
+}